@@ -5,20 +5,97 @@ import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
 
+import androidx.core.text.PrecomputedTextCompat;
+
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import cn.lven.xview.R;
+import cn.lven.xview.text.XTextPrecomputer;
+import cn.lven.xview.util.FrameScheduler;
+import cn.lven.xview.util.XExecutors;
 
 
 /**
  * 流式布局适配器的封装，可以快速使用
+ * 数据只在主线程修改，绑定时读取不用加锁；其他线程调用修改数据的方法会先排队，下一帧在主线程一次改完
+ * 数据很多时可以通过 setPagedSource 分页加载
  */
 
 public abstract class CommAdapter<T> extends XBaseAdapter {
 
     protected int mLayoutId;
+    /**
+     * 多种布局的支持，为空时只有mLayoutId一种布局
+     */
+    protected MultiTypeSupport<T> mMultiTypeSupport;
     protected List<T> mData;
     protected Context mContext;
     protected LayoutInflater mInflater;
+    /**
+     * 设置了就用差异刷新
+     */
+    private XDiffUtil.ItemCallback<T> mDiffCallback;
+    /**
+     * 后台正在计算差异的新数据
+     */
+    private List<T> mPendingData;
+    private int mDiffGeneration;
+    /**
+     * 其他线程的修改，按顺序在主线程执行
+     */
+    private final ConcurrentLinkedQueue<Runnable> mPendingOps = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean isPublishPosted = new AtomicBoolean();
+    private boolean isPublishing;
+    private FrameScheduler mPublishScheduler;
+    /**
+     * 分页加载，不分页时为空
+     */
+    private PagedSource<T> mPagedSource;
+    // 其他线程修改数据时会检查
+    private volatile PagedList<T> mPagedList;
+    private final HashSet<Integer> mLoadingPages = new HashSet<>();
+    private int mPagedGeneration;
+    private int mPageLoadDistance;
+    /**
+     * 可见的页的范围，布局还没告诉可见区域时是-1
+     */
+    private int mFirstVisiblePage = -1;
+    private int mLastVisiblePage = -1;
+    /**
+     * 预先计算文字排版的样式，为空时不计算
+     */
+    private PrecomputedTextCompat.Params mTextParams;
+    private TextExtractor<T> mTextExtractor;
+    /**
+     * 创建Holder时遍历一次条目缓存所有有ID的View，绑定时不用一个一个findViewById
+     */
+    private boolean isPrebuildViews = true;
+    private final Runnable mSchedulePublish = new Runnable() {
+        @Override
+        public void run() {
+            if (mPublishScheduler == null) {
+                mPublishScheduler = new FrameScheduler(new Runnable() {
+                    @Override
+                    public void run() {
+                        publishPendingOps();
+                    }
+                });
+            }
+            mPublishScheduler.schedule();
+        }
+    };
+
+    /**
+     * 取条目要显示的文字，在后台线程调用
+     */
+    public interface TextExtractor<T> {
+        CharSequence getText(T item);
+    }
 
     public CommAdapter(Context context, List<T> data, int layoutId) {
         this.mContext = context;
@@ -31,6 +108,18 @@ public abstract class CommAdapter<T> extends XBaseAdapter {
         this(context, null, layoutId);
     }
 
+    /**
+     * 多种布局，每种布局的View单独复用
+     */
+    public CommAdapter(Context context, List<T> data, MultiTypeSupport<T> multiTypeSupport) {
+        this(context, data, -1);
+        this.mMultiTypeSupport = multiTypeSupport;
+    }
+
+    public CommAdapter(Context context, MultiTypeSupport<T> multiTypeSupport) {
+        this(context, null, multiTypeSupport);
+    }
+
     @Override
     public int getCount() {
         return mData.size();
@@ -38,50 +127,471 @@ public abstract class CommAdapter<T> extends XBaseAdapter {
 
     @Override
     public View getView(int position, ViewGroup parent) {
-        View view = mInflater.inflate(mLayoutId, parent, false);
-        XQuickViewHolder xHolder = new XQuickViewHolder(view);
+        return getView(position, null, parent);
+    }
+
+    @Override
+    public View getView(int position, View convertView, ViewGroup parent) {
+        int layoutId = getLayoutId(position);
+        View view = convertView;
+        if (view != null && !canReuse(view, position, layoutId)) {
+            // 布局不一样不能复用
+            view = null;
+        }
+        if (view == null) {
+            view = mInflater.inflate(layoutId, parent, false);
+        }
+        // 同一个View一直用同一个Holder
+        XQuickViewHolder xHolder = XQuickViewHolder.get(view, layoutId, isPrebuildViews);
+        if (mPagedList != null && mFirstVisiblePage < 0 && mPagedList.pageOf(position) < mPagedList.getMaxPages()) {
+            // 还不知道可见区域，只加载前面几页；不虚拟化的布局会绑定所有位置，不能每个都加载
+            loadAround(position, position);
+        }
         convert(xHolder, mData.get(position), position);
         return view;
     }
 
+    /**
+     * convertView是不是同一种布局，只读标记，不能在这里创建Holder
+     * 已经绑定过的看Holder的布局，后台创建还没绑定的看布局记录的类型
+     */
+    private boolean canReuse(View view, int position, int layoutId) {
+        Object holder = view.getTag(R.id.xview_holder);
+        if (holder instanceof XQuickViewHolder) {
+            return ((XQuickViewHolder) holder).getLayoutId() == layoutId;
+        }
+        Object viewType = view.getTag(R.id.xview_view_type);
+        return !(viewType instanceof Integer) || (Integer) viewType == getItemViewType(position);
+    }
+
+    @Override
+    public void onViewportChanged(int firstPosition, int lastPosition) {
+        PagedList<T> list = mPagedList;
+        if (list == null || firstPosition >= list.size()) {
+            return;
+        }
+        lastPosition = Math.min(lastPosition, list.size() - 1);
+        mFirstVisiblePage = list.pageOf(firstPosition);
+        mLastVisiblePage = list.pageOf(lastPosition);
+        loadAround(firstPosition, lastPosition);
+        list.trimAround(mFirstVisiblePage, mLastVisiblePage);
+    }
+
+    @Override
+    public void onPrefetch(int position) {
+        if (mPagedList != null && position < mPagedList.size()) {
+            loadAround(position, position);
+        }
+    }
+
+    @Override
+    public int getItemViewType(int position) {
+        if (mMultiTypeSupport == null) {
+            return 0;
+        }
+        return mMultiTypeSupport.getLayoutId(mData.get(position), position);
+    }
+
+    /**
+     * 条目的布局
+     */
+    protected int getLayoutId(int position) {
+        if (mMultiTypeSupport == null) {
+            return mLayoutId;
+        }
+        return mMultiTypeSupport.getLayoutId(mData.get(position), position);
+    }
+
+    @Override
+    public View onCreateView(ViewGroup parent, int viewType) {
+        // 多种布局时类型就是布局ID
+        int layoutId = mMultiTypeSupport == null ? mLayoutId : viewType;
+        // LayoutInflater不是线程安全的，每次复制一个
+        return mInflater.cloneInContext(mContext).inflate(layoutId, parent, false);
+    }
+
+    /**
+     * 绑定数据
+     *
+     * @param item 分页加载时还没加载的位置是null，显示占位
+     */
     public abstract void convert(XQuickViewHolder holder, T item, int position);
 
+    /**
+     * 设置创建Holder时是否缓存条目里面所有有ID的View，默认缓存；条目很大但只用到少数几个View时可以关掉
+     */
+    public void setPrebuildViews(boolean prebuild) {
+        isPrebuildViews = prebuild;
+    }
+
+    //==========================================文字排版================================================
+
+    /**
+     * 设置预先计算文字排版：数据来的时候在后台按params的样式算好条目文字的排版，
+     * convert里面通过 XQuickViewHolder.setText 设置时直接用算好的，测量时不用再排版；只在API 28以上有效
+     *
+     * @param params    条目TextView的样式，通过 XTextPrecomputer.getParams 获取，传null不再计算
+     * @param extractor 取条目要显示的文字
+     */
+    public void setTextPrecompute(PrecomputedTextCompat.Params params, TextExtractor<T> extractor) {
+        // API 28以下TextView用不了算好的排版，不用计算
+        mTextParams = extractor == null || !XTextPrecomputer.isSupported() ? null : params;
+        mTextExtractor = extractor;
+        precomputeTexts(mData);
+    }
+
+    /**
+     * 在后台计算新数据的文字排版
+     */
+    private void precomputeTexts(List<T> items) {
+        if (mTextParams == null || items == null || items.isEmpty()) {
+            return;
+        }
+        final List<T> copy = new ArrayList<>(items);
+        final PrecomputedTextCompat.Params params = mTextParams;
+        final TextExtractor<T> extractor = mTextExtractor;
+        XExecutors.background().execute(new Runnable() {
+            @Override
+            public void run() {
+                XTextPrecomputer precomputer = XTextPrecomputer.getInstance();
+                for (T item : copy) {
+                    if (item != null) {
+                        precomputer.precomputeNow(params, extractor.getText(item));
+                    }
+                }
+            }
+        });
+    }
+
+    //==========================================分页加载================================================
+
+    /**
+     * 分页加载数据，替换现有的数据
+     * 按布局 setViewportHint 告诉的可见位置和预取的位置，快到没加载的页时在后台加载，
+     * 内存里面最多保留 maxPages 页，离可见的页远的丢掉，再滚动到时重新加载
+     * 虚拟化的布局自己会告诉可见区域；其他布局要由滚动的父布局调用 setViewportHint，不然只加载前面 maxPages 页
+     * 知道总数时没加载的位置先用占位（convert的item为null），个数不变；分页时调用add、set、remove会抛出IllegalStateException
+     * 在主线程调用
+     *
+     * @param maxPages 最多保留的页数，至少3页，当前页和前后各一页
+     */
+    public void setPagedSource(PagedSource<T> source, int pageSize, int maxPages) {
+        // 之前排队的修改先执行，分页之后就不能改了
+        publishPendingOps();
+        applyPendingData();
+        mPagedSource = source;
+        mPagedList = new PagedList<>(pageSize, Math.max(maxPages, 3));
+        mPagedGeneration++;
+        mLoadingPages.clear();
+        mFirstVisiblePage = -1;
+        mLastVisiblePage = -1;
+        mPageLoadDistance = pageSize / 2;
+        mData = mPagedList;
+        notifyDataSetChanged();
+        loadPage(0);
+    }
+
+    /**
+     * 设置离没加载的页还有多少个条目时开始加载，默认半页
+     */
+    public void setPageLoadDistance(int distance) {
+        mPageLoadDistance = Math.max(distance, 0);
+    }
+
+    /**
+     * 重新从第一页开始加载
+     */
+    public void refreshPages() {
+        if (mPagedList != null) {
+            setPagedSource(mPagedSource, mPagedList.getPageSize(), mPagedList.getMaxPages());
+        }
+    }
+
+    public PagedList<T> getPagedList() {
+        return mPagedList;
+    }
+
+    /**
+     * 加载位置范围前后 mPageLoadDistance 以内还没加载的页
+     */
+    private void loadAround(int firstPosition, int lastPosition) {
+        PagedList<T> list = mPagedList;
+        int firstPage = list.pageOf(Math.max(firstPosition - mPageLoadDistance, 0));
+        int lastPage = Math.min(list.pageOf(lastPosition + mPageLoadDistance), list.getPageCount() - 1);
+        for (int page = firstPage; page <= lastPage; page++) {
+            if (!list.isPageLoaded(page) && !mLoadingPages.contains(page)) {
+                loadPage(page);
+            }
+        }
+    }
+
+    private void loadPage(final int page) {
+        final PagedSource<T> source = mPagedSource;
+        final int pageSize = mPagedList.getPageSize();
+        final boolean isFirstLoad = !mPagedList.isCountKnown() && mPagedList.getLoadedPageCount() == 0
+                && mLoadingPages.isEmpty();
+        final int generation = mPagedGeneration;
+        mLoadingPages.add(page);
+        XExecutors.background().execute(new Runnable() {
+            @Override
+            public void run() {
+                int totalCount = PagedSource.COUNT_UNKNOWN;
+                List<T> items = null;
+                try {
+                    if (isFirstLoad) {
+                        totalCount = source.loadTotalCount();
+                    }
+                    items = source.loadPage(page, pageSize);
+                } catch (Exception e) {
+                    // 加载失败还是占位，下次绑定到再加载
+                }
+                final int count = totalCount;
+                final List<T> result = items;
+                XExecutors.mainHandler().post(new Runnable() {
+                    @Override
+                    public void run() {
+                        onPageLoaded(generation, page, count, result);
+                    }
+                });
+            }
+        });
+    }
+
+    private void onPageLoaded(int generation, int page, int totalCount, List<T> items) {
+        if (generation != mPagedGeneration) {
+            // 已经换了数据
+            return;
+        }
+        mLoadingPages.remove(page);
+        PagedList<T> list = mPagedList;
+        int oldSize = list.size();
+        if (totalCount >= 0) {
+            list.setTotalCount(totalCount);
+        }
+        if (items == null) {
+            if (list.size() > oldSize) {
+                notifyItemRangeInserted(oldSize, list.size() - oldSize);
+            }
+            return;
+        }
+        list.putPage(page, new ArrayList<T>(items));
+        // 超过最多的页数时丢掉离可见的页最远的，还不知道可见区域时以这一页为准
+        if (mFirstVisiblePage < 0) {
+            list.trimAround(page);
+        } else {
+            list.trimAround(mFirstVisiblePage, mLastVisiblePage);
+        }
+        precomputeTexts(items);
+        int size = list.size();
+        // 占位换成数据，离可见的页太远马上被丢掉的不用刷新
+        int start = page * list.getPageSize();
+        int end = Math.min(start + items.size(), oldSize);
+        if (end > start && list.isPageLoaded(page)) {
+            notifyItemRangeChanged(start, end - start);
+        }
+        if (size > oldSize) {
+            notifyItemRangeInserted(oldSize, size - oldSize);
+        }
+    }
+
+    /**
+     * 不再分页，之后用普通的列表
+     */
+    private void leavePagedMode() {
+        if (mPagedList == null) {
+            return;
+        }
+        mPagedSource = null;
+        mPagedList = null;
+        mPagedGeneration++;
+        mLoadingPages.clear();
+        mFirstVisiblePage = -1;
+        mLastVisiblePage = -1;
+        mData = new ArrayList<>();
+        notifyDataSetChanged();
+    }
+
     //==========================================数据相关================================================
-    public void add(T elem) {
+
+    /**
+     * 分页时只能通过 PagedSource 加载数据，在调用的线程马上报错，不等到排队的修改在主线程执行
+     */
+    private void checkNotPaged() {
+        if (mPagedList != null) {
+            throw new IllegalStateException("Data is paged, call replaceAll, changeAll or clear to leave paged mode first");
+        }
+    }
+
+    /**
+     * 不在主线程时把修改放到队列里面，返回true；在主线程先执行排队的修改，返回false
+     */
+    private boolean enqueueIfBackground(Runnable op) {
+        if (XExecutors.isMainThread()) {
+            publishPendingOps();
+            return false;
+        }
+        mPendingOps.add(op);
+        if (isPublishPosted.compareAndSet(false, true)) {
+            XExecutors.mainHandler().post(mSchedulePublish);
+        }
+        return true;
+    }
+
+    /**
+     * 在主线程执行排队的修改，通知合并成一次分发
+     */
+    private void publishPendingOps() {
+        if (isPublishing) {
+            return;
+        }
+        // 先清掉标记，之后排队的会再调度一次
+        isPublishPosted.set(false);
+        if (mPendingOps.isEmpty()) {
+            return;
+        }
+        isPublishing = true;
+        beginBatch();
+        try {
+            Runnable op;
+            while ((op = mPendingOps.poll()) != null) {
+                op.run();
+            }
+        } finally {
+            isPublishing = false;
+            endBatch();
+        }
+    }
+
+    public void add(final T elem) {
+        checkNotPaged();
+        if (enqueueIfBackground(new Runnable() {
+            @Override
+            public void run() {
+                add(elem);
+            }
+        })) {
+            return;
+        }
+        applyPendingData();
         mData.add(elem);
-        notifyDataSetChanged();
+        notifyItemInserted(mData.size() - 1);
+        precomputeTexts(Collections.singletonList(elem));
     }
 
     public void addAll(List<T> data) {
+        checkNotPaged();
+        // 其他线程复制一份，调用的线程之后还可能改这个列表
+        final List<T> copy = XExecutors.isMainThread() ? data : new ArrayList<T>(data);
+        if (enqueueIfBackground(new Runnable() {
+            @Override
+            public void run() {
+                addAll(copy);
+            }
+        })) {
+            return;
+        }
+        applyPendingData();
+        int positionStart = mData.size();
         mData.addAll(data);
-        notifyDataSetChanged();
+        notifyItemRangeInserted(positionStart, data.size());
+        precomputeTexts(data);
     }
 
-    public void addFirst(T elem) {
+    public void addFirst(final T elem) {
+        checkNotPaged();
+        if (enqueueIfBackground(new Runnable() {
+            @Override
+            public void run() {
+                addFirst(elem);
+            }
+        })) {
+            return;
+        }
+        applyPendingData();
         mData.add(0, elem);
-        notifyDataSetChanged();
+        notifyItemInserted(0);
+        precomputeTexts(Collections.singletonList(elem));
     }
 
-    public void set(T oldElem, T newElem) {
+    public void set(final T oldElem, final T newElem) {
+        checkNotPaged();
+        if (enqueueIfBackground(new Runnable() {
+            @Override
+            public void run() {
+                set(oldElem, newElem);
+            }
+        })) {
+            return;
+        }
         set(mData.indexOf(oldElem), newElem);
     }
 
-    public void set(int index, T elem) {
+    public void set(final int index, final T elem) {
+        checkNotPaged();
+        if (enqueueIfBackground(new Runnable() {
+            @Override
+            public void run() {
+                set(index, elem);
+            }
+        })) {
+            return;
+        }
+        applyPendingData();
         mData.set(index, elem);
-        notifyDataSetChanged();
+        notifyItemChanged(index);
+        precomputeTexts(Collections.singletonList(elem));
     }
 
-    public void remove(T elem) {
-        mData.remove(elem);
-        notifyDataSetChanged();
+    public void remove(final T elem) {
+        checkNotPaged();
+        if (enqueueIfBackground(new Runnable() {
+            @Override
+            public void run() {
+                remove(elem);
+            }
+        })) {
+            return;
+        }
+        applyPendingData();
+        int index = mData.indexOf(elem);
+        if (index >= 0) {
+            remove(index);
+        }
     }
 
-    public void remove(int index) {
+    public void remove(final int index) {
+        checkNotPaged();
+        if (enqueueIfBackground(new Runnable() {
+            @Override
+            public void run() {
+                remove(index);
+            }
+        })) {
+            return;
+        }
+        applyPendingData();
         mData.remove(index);
-        notifyDataSetChanged();
+        notifyItemRemoved(index);
     }
 
     public void replaceAll(List<T> elem) {
+        final List<T> copy = elem == null || XExecutors.isMainThread() ? elem : new ArrayList<T>(elem);
+        if (enqueueIfBackground(new Runnable() {
+            @Override
+            public void run() {
+                replaceAll(copy);
+            }
+        })) {
+            return;
+        }
+        leavePagedMode();
+        // 差异还在后台计算的时候文字也一起算
+        precomputeTexts(elem);
+        if (mDiffCallback != null) {
+            replaceAllWithDiff(elem);
+            return;
+        }
+        applyPendingData();
         mData.clear();
         if (elem != null && elem.size() > 0) {
             mData.addAll(elem);
@@ -89,11 +599,125 @@ public abstract class CommAdapter<T> extends XBaseAdapter {
         notifyDataSetChanged();
     }
 
+    /**
+     * 设置差异比较的回调，设置之后replaceAll会在后台计算差异，只刷新改变的条目
+     */
+    public void setDiffCallback(XDiffUtil.ItemCallback<T> callback) {
+        this.mDiffCallback = callback;
+    }
+
+    private void replaceAllWithDiff(List<T> elem) {
+        final List<T> oldData = new ArrayList<>(mData);
+        final List<T> newData = elem == null ? new ArrayList<T>() : new ArrayList<>(elem);
+        final XDiffUtil.ItemCallback<T> callback = mDiffCallback;
+        final int generation = ++mDiffGeneration;
+        mPendingData = newData;
+        XExecutors.background().execute(new Runnable() {
+            @Override
+            public void run() {
+                final XDiffUtil.DiffResult result = XDiffUtil.calculateDiff(oldData, newData, callback);
+                XExecutors.mainHandler().post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (generation != mDiffGeneration) {
+                            // 已经有新的数据了
+                            return;
+                        }
+                        mPendingData = null;
+                        if (!mData.equals(oldData)) {
+                            // 计算期间数据被改了，只能全部刷新
+                            mData.clear();
+                            mData.addAll(newData);
+                            notifyDataSetChanged();
+                            return;
+                        }
+                        dispatchDiff(result, newData);
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * 按顺序修改数据并分发，每一步通知的时候数据和位置都是对应的
+     */
+    private void dispatchDiff(XDiffUtil.DiffResult result, final List<T> newData) {
+        beginDiffDispatch();
+        try {
+            dispatchDiffSteps(result, newData);
+        } finally {
+            endDiffDispatch();
+        }
+        // 没有改变的条目也换成新的对象
+        mData.clear();
+        mData.addAll(newData);
+    }
+
+    private void dispatchDiffSteps(XDiffUtil.DiffResult result, final List<T> newData) {
+        result.dispatchUpdatesTo(new XDiffUtil.ListUpdateCallback() {
+            @Override
+            public void onInserted(int position, int count) {
+                mData.addAll(position, newData.subList(position, position + count));
+                notifyItemRangeInserted(position, count);
+            }
+
+            @Override
+            public void onRemoved(int position, int count) {
+                mData.subList(position, position + count).clear();
+                notifyItemRangeRemoved(position, count);
+            }
+
+            @Override
+            public void onMoved(int fromPosition, int toPosition) {
+                mData.add(toPosition, mData.remove(fromPosition));
+                notifyItemMoved(fromPosition, toPosition);
+            }
+
+            @Override
+            public void onChanged(int position, int count) {
+                for (int i = position; i < position + count; i++) {
+                    mData.set(i, newData.get(i));
+                }
+                notifyItemRangeChanged(position, count);
+            }
+        });
+    }
+
+    /**
+     * 差异还没算完又要改数据，先直接把新数据设置上去
+     */
+    private void applyPendingData() {
+        if (mPendingData == null) {
+            return;
+        }
+        List<T> pendingData = mPendingData;
+        mPendingData = null;
+        mDiffGeneration++;
+        mData.clear();
+        mData.addAll(pendingData);
+        notifyDataSetChanged();
+    }
+
     public void changeAll(List<T> elem) {
+        final List<T> copy = XExecutors.isMainThread() ? elem : new ArrayList<T>(elem);
+        if (enqueueIfBackground(new Runnable() {
+            @Override
+            public void run() {
+                changeAll(copy);
+            }
+        })) {
+            return;
+        }
+        applyPendingData();
+        leavePagedMode();
         mData.clear();
         mData.addAll(elem);
+        precomputeTexts(elem);
     }
 
+    /**
+     * 只在主线程调用，其他线程排队的修改还没执行
+     */
     public boolean contains(T elem) {
         return mData.contains(elem);
     }
@@ -102,12 +726,26 @@ public abstract class CommAdapter<T> extends XBaseAdapter {
      * 清除
      */
     public void clear() {
+        if (enqueueIfBackground(new Runnable() {
+            @Override
+            public void run() {
+                clear();
+            }
+        })) {
+            return;
+        }
+        applyPendingData();
+        leavePagedMode();
         mData.clear();
         notifyDataSetChanged();
     }
 
+    /**
+     * 当前显示的数据，不能直接修改，要通过add、remove等方法修改才会刷新
+     * 只在主线程读取
+     */
     public List<T> getData() {
-        return mData;
+        return Collections.unmodifiableList(mData);
     }
 
     public boolean isLast(int position) {
@@ -0,0 +1,13 @@
+package cn.lven.xview.adapter;
+
+
+/**
+ * 多种条目布局的支持
+ */
+
+public interface MultiTypeSupport<T> {
+    /**
+     * 根据条目获取布局，布局ID同时作为条目的类型，同一种布局的View才会复用
+     */
+    int getLayoutId(T item, int position);
+}
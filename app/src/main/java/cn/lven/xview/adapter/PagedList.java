@@ -0,0 +1,144 @@
+package cn.lven.xview.adapter;
+
+import java.util.AbstractList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+
+
+/**
+ * 分页保存的数据，只保留最近使用的几页，离得远的页丢掉，再用到时重新加载
+ * 没有加载的位置 get 返回null（占位），个数保持不变
+ * 只能通过 putPage 修改
+ */
+
+public class PagedList<T> extends AbstractList<T> {
+    private final int mPageSize;
+    private final int mMaxPages;
+    private final HashMap<Integer, List<T>> mPages = new HashMap<>();
+    private int mSize;
+    private boolean isCountKnown;
+    // 不知道总数时，是否已经加载到最后一页
+    private boolean isEnd;
+
+    /**
+     * @param maxPages 内存里面最多保留的页数
+     */
+    public PagedList(int pageSize, int maxPages) {
+        if (pageSize <= 0) {
+            throw new IllegalArgumentException("pageSize must be positive: " + pageSize);
+        }
+        mPageSize = pageSize;
+        mMaxPages = Math.max(maxPages, 1);
+    }
+
+    @Override
+    public T get(int index) {
+        if (index < 0 || index >= mSize) {
+            throw new IndexOutOfBoundsException("index: " + index + ", size: " + mSize);
+        }
+        List<T> page = mPages.get(index / mPageSize);
+        int offset = index % mPageSize;
+        return page == null || offset >= page.size() ? null : page.get(offset);
+    }
+
+    @Override
+    public int size() {
+        return mSize;
+    }
+
+    /**
+     * 设置总数，没加载的用占位
+     */
+    public void setTotalCount(int count) {
+        isCountKnown = true;
+        mSize = Math.max(count, 0);
+    }
+
+    public boolean isCountKnown() {
+        return isCountKnown;
+    }
+
+    /**
+     * 放入加载好的一页，不知道总数时个数跟着增加
+     */
+    public void putPage(int page, List<T> items) {
+        mPages.put(page, items);
+        if (!isCountKnown) {
+            int end = page * mPageSize + items.size();
+            mSize = Math.max(mSize, end);
+            if (items.size() < mPageSize) {
+                isEnd = true;
+            }
+        }
+    }
+
+    public boolean isPageLoaded(int page) {
+        return mPages.containsKey(page);
+    }
+
+    public int getLoadedPageCount() {
+        return mPages.size();
+    }
+
+    public int pageOf(int position) {
+        return position / mPageSize;
+    }
+
+    public int getPageSize() {
+        return mPageSize;
+    }
+
+    public int getMaxPages() {
+        return mMaxPages;
+    }
+
+    /**
+     * 可以加载的页数，不知道总数并且还有更多时包含下一页
+     */
+    public int getPageCount() {
+        int count = (mSize + mPageSize - 1) / mPageSize;
+        if (!isCountKnown && !isEnd) {
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * 超过最多的页数时，丢掉离 centerPage 最远的页
+     *
+     * @return 丢掉的页数
+     */
+    public int trimAround(int centerPage) {
+        return trimAround(centerPage, centerPage);
+    }
+
+    /**
+     * 超过最多的页数时，丢掉离 firstPage 到 lastPage 这个范围最远的页，范围里面的页不丢
+     *
+     * @return 丢掉的页数
+     */
+    public int trimAround(int firstPage, int lastPage) {
+        int dropped = 0;
+        while (mPages.size() > mMaxPages) {
+            int farthest = -1;
+            int distance = 0;
+            Iterator<Integer> iterator = mPages.keySet().iterator();
+            while (iterator.hasNext()) {
+                int page = iterator.next();
+                int d = page < firstPage ? firstPage - page : page - lastPage;
+                if (d > distance) {
+                    distance = d;
+                    farthest = page;
+                }
+            }
+            if (farthest < 0) {
+                // 剩下的都在范围里面
+                break;
+            }
+            mPages.remove(farthest);
+            dropped++;
+        }
+        return dropped;
+    }
+}
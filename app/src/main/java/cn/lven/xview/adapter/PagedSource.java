@@ -0,0 +1,32 @@
+package cn.lven.xview.adapter;
+
+import java.util.List;
+
+
+/**
+ * 分页的数据来源，方法都在后台线程调用
+ */
+
+public abstract class PagedSource<T> {
+    /**
+     * 不知道总数
+     */
+    public static final int COUNT_UNKNOWN = -1;
+
+    /**
+     * 数据的总数，知道总数时没加载的位置用占位（null）显示，个数不会变
+     *
+     * @return 不知道返回 COUNT_UNKNOWN，加载到哪里显示到哪里
+     */
+    public int loadTotalCount() throws Exception {
+        return COUNT_UNKNOWN;
+    }
+
+    /**
+     * 加载一页
+     *
+     * @param page 从0开始
+     * @return 不知道总数时，个数少于pageSize表示没有更多了
+     */
+    public abstract List<T> loadPage(int page, int pageSize) throws Exception;
+}
@@ -0,0 +1,123 @@
+package cn.lven.xview.adapter;
+
+
+/**
+ * 合并一批数据改变的通知，位置都是按顺序执行前面的操作之后的位置
+ * 只有一个操作原样分发；接着插入、移除的连续范围合并成一个；改变合并成包含所有改变的范围；改变刚插入的条目不再通知；其他的变成全部刷新
+ */
+
+final class UpdateBatch {
+    private static final int TYPE_NONE = 0;
+    private static final int TYPE_INSERT = 1;
+    private static final int TYPE_REMOVE = 2;
+    private static final int TYPE_CHANGE = 3;
+    private static final int TYPE_MOVE = 4;
+    private static final int TYPE_FULL = 5;
+
+    private int mType = TYPE_NONE;
+    // 移动时是 from 和 to
+    private int mStart;
+    private int mCount;
+
+    /**
+     * 接收合并之后的结果
+     */
+    interface Callback extends XDiffUtil.ListUpdateCallback {
+        void onDataSetChanged();
+    }
+
+    void insert(int position, int count) {
+        if (mType == TYPE_NONE) {
+            set(TYPE_INSERT, position, count);
+        } else if (mType == TYPE_INSERT && position >= mStart && position <= mStart + mCount) {
+            // 插在刚插入的范围里面或者紧挨着
+            mCount += count;
+        } else {
+            changeAll();
+        }
+    }
+
+    void remove(int position, int count) {
+        if (mType == TYPE_NONE) {
+            set(TYPE_REMOVE, position, count);
+        } else if (mType == TYPE_REMOVE && position <= mStart && position + count >= mStart) {
+            // 移除的范围和之前移除的位置挨着，在原来的列表里面也是连续的
+            mStart = position;
+            mCount += count;
+        } else if (mType == TYPE_INSERT && position >= mStart && position + count <= mStart + mCount) {
+            // 移除刚插入的，相互抵消
+            mCount -= count;
+            if (mCount == 0) {
+                mType = TYPE_NONE;
+            }
+        } else {
+            changeAll();
+        }
+    }
+
+    void change(int position, int count) {
+        if (mType == TYPE_NONE) {
+            set(TYPE_CHANGE, position, count);
+        } else if (mType == TYPE_CHANGE) {
+            // 改变不影响位置，不挨着的也合并成包含两者的范围，比全部刷新绑定得少
+            int end = Math.max(mStart + mCount, position + count);
+            mStart = Math.min(mStart, position);
+            mCount = end - mStart;
+        } else if (mType == TYPE_INSERT && position >= mStart && position + count <= mStart + mCount) {
+            // 刚插入的还没有显示，插入的时候就是新内容
+        } else {
+            changeAll();
+        }
+    }
+
+    void move(int fromPosition, int toPosition) {
+        if (mType == TYPE_NONE) {
+            set(TYPE_MOVE, fromPosition, toPosition);
+        } else {
+            changeAll();
+        }
+    }
+
+    void changeAll() {
+        mType = TYPE_FULL;
+    }
+
+    boolean isEmpty() {
+        return mType == TYPE_NONE;
+    }
+
+    /**
+     * 分发合并的结果并清空
+     */
+    void dispatch(Callback callback) {
+        int type = mType;
+        int start = mStart;
+        int count = mCount;
+        mType = TYPE_NONE;
+        switch (type) {
+            case TYPE_INSERT:
+                callback.onInserted(start, count);
+                break;
+            case TYPE_REMOVE:
+                callback.onRemoved(start, count);
+                break;
+            case TYPE_CHANGE:
+                callback.onChanged(start, count);
+                break;
+            case TYPE_MOVE:
+                callback.onMoved(start, count);
+                break;
+            case TYPE_FULL:
+                callback.onDataSetChanged();
+                break;
+            default:
+                break;
+        }
+    }
+
+    private void set(int type, int start, int count) {
+        mType = type;
+        mStart = start;
+        mCount = count;
+    }
+}
@@ -0,0 +1,71 @@
+package cn.lven.xview.adapter;
+
+import java.util.Arrays;
+
+
+/**
+ * 按ID缓存条目里面的View，没有缓存的才通过Finder查找，找到的缓存起来
+ * ID有序存放二分查找，和SparseArray一样，查找不分配对象
+ */
+
+class ViewCache<V> {
+    /**
+     * 查找View，比如 View.findViewById
+     */
+    interface Finder<V> {
+        V find(int id);
+    }
+
+    private final Finder<V> mFinder;
+    private int[] mIds;
+    private Object[] mViews;
+    private int mSize;
+
+    ViewCache(Finder<V> finder, int capacity) {
+        mFinder = finder;
+        mIds = new int[Math.max(capacity, 1)];
+        mViews = new Object[mIds.length];
+    }
+
+    /**
+     * 获取View，没有缓存就查找一次，找不到返回null，下次还会查找
+     */
+    @SuppressWarnings("unchecked")
+    V get(int id) {
+        int index = Arrays.binarySearch(mIds, 0, mSize, id);
+        if (index >= 0) {
+            return (V) mViews[index];
+        }
+        V view = mFinder.find(id);
+        if (view != null) {
+            insert(~index, id, view);
+        }
+        return view;
+    }
+
+    /**
+     * 缓存一个View，已经有了就保留之前的，和findViewById一样前面找到的优先
+     */
+    void putIfAbsent(int id, V view) {
+        int index = Arrays.binarySearch(mIds, 0, mSize, id);
+        if (index < 0) {
+            insert(~index, id, view);
+        }
+    }
+
+    int size() {
+        return mSize;
+    }
+
+    private void insert(int index, int id, V view) {
+        if (mSize == mIds.length) {
+            mIds = Arrays.copyOf(mIds, mSize * 2);
+            mViews = Arrays.copyOf(mViews, mSize * 2);
+        }
+        System.arraycopy(mIds, index, mIds, index + 1, mSize - index);
+        System.arraycopy(mViews, index, mViews, index + 1, mSize - index);
+        mIds[index] = id;
+        mViews[index] = view;
+        mSize++;
+    }
+}
@@ -1,16 +1,60 @@
 package cn.lven.xview.adapter;
 
-import android.database.DataSetObservable;
 import android.database.DataSetObserver;
 import android.view.View;
 import android.view.ViewGroup;
 
+import cn.lven.xview.util.FrameScheduler;
+import cn.lven.xview.util.XExecutors;
+
 /**
  * 适配器
+ * 数据改变的通知默认合并到下一帧分发，一帧里面改多次只刷新一次
+ * 通知只在主线程记录和分发，其他线程调用会post到主线程
  */
 
 public abstract class XBaseAdapter {
-    private DataSetObservable mObservable = new DataSetObservable();
+    /**
+     * 没有ID
+     */
+    public static final long NO_ID = -1;
+
+    private XDataSetObservable mObservable = new XDataSetObservable();
+    /**
+     * 还没分发的通知
+     */
+    private final UpdateBatch mPendingUpdates = new UpdateBatch();
+    private int mBatchDepth;
+    private boolean isCoalesceNotifications = true;
+    // 分发差异结果时每一步马上通知，数据是一步一步改的
+    private boolean isDispatchingDiff;
+    private FrameScheduler mNotifyScheduler;
+    private final UpdateBatch.Callback mDispatcher = new UpdateBatch.Callback() {
+        @Override
+        public void onDataSetChanged() {
+            mObservable.notifyChanged();
+        }
+
+        @Override
+        public void onInserted(int position, int count) {
+            mObservable.notifyItemRangeInserted(position, count);
+        }
+
+        @Override
+        public void onRemoved(int position, int count) {
+            mObservable.notifyItemRangeRemoved(position, count);
+        }
+
+        @Override
+        public void onMoved(int fromPosition, int toPosition) {
+            mObservable.notifyItemMoved(fromPosition, toPosition);
+        }
+
+        @Override
+        public void onChanged(int position, int count) {
+            mObservable.notifyItemRangeChanged(position, count);
+        }
+    };
 
     /**
      * 数量
@@ -22,6 +66,86 @@ public abstract class XBaseAdapter {
      */
     public abstract View getView(int position, ViewGroup parent);
 
+    /**
+     * 条目的布局，convertView不为空时可以直接复用，不需要重新创建
+     */
+    public View getView(int position, View convertView, ViewGroup parent) {
+        return getView(position, parent);
+    }
+
+    /**
+     * 条目的类型，同一种类型的View才会互相复用
+     */
+    public int getItemViewType(int position) {
+        return 0;
+    }
+
+    /**
+     * 条目的ID是否稳定，同一个条目一直是同一个ID
+     * 稳定时数据全部刷新也会按ID保留原来的子View，只创建新ID的
+     */
+    public boolean hasStableIds() {
+        return false;
+    }
+
+    /**
+     * 条目的ID，hasStableIds返回true时要重写
+     */
+    public long getItemId(int position) {
+        return NO_ID;
+    }
+
+    /**
+     * 只创建条目的View不绑定数据，会在后台线程调用，之后再通过 getView 的convertView绑定
+     *
+     * @return 不支持在后台创建返回null，会在主线程调用 getView 创建
+     */
+    public View onCreateView(ViewGroup parent, int viewType) {
+        return null;
+    }
+
+    /**
+     * 估算条目占据的宽高（包含margin），虚拟化的流式布局不用创建View就可以换行
+     *
+     * @param outSize 宽放在[0]，高放在[1]
+     * @return 不能估算返回false，布局会绑定一个View测量
+     */
+    public boolean estimateItemSize(int position, int[] outSize) {
+        return false;
+    }
+
+    /**
+     * 条目测量结果的Key，内容一样的条目测量出来的宽高也一样，比如标签的文字，布局会缓存测量结果
+     * Key要实现equals和hashCode，条目的样式不一样时Key也要不一样
+     *
+     * @return 不能缓存返回null
+     */
+    public Object getMeasureKey(int position) {
+        return null;
+    }
+
+    /**
+     * 可见的条目范围改变，布局在 setViewportHint 时调用，比如分页加载按可见的位置加载
+     *
+     * @param firstPosition 可见的第一个位置
+     * @param lastPosition  可见的最后一个位置
+     */
+    public void onViewportChanged(int firstPosition, int lastPosition) {
+    }
+
+    /**
+     * 预取条目要用的资源，比如通过 XImageLoader.prefetch 提前把图片加载到内存，主线程空闲时调用
+     * 布局设置了 setPrefetchCount 并且有可见区域时才会调用
+     */
+    public void onPrefetch(int position) {
+    }
+
+    /**
+     * 滚动方向反过来，之前预取的条目用不上了，可以取消还没完成的加载
+     */
+    public void onCancelPrefetch(int position) {
+    }
+
     /**
      * 注册数据监听
      */
@@ -44,11 +168,213 @@ public abstract class XBaseAdapter {
     }
 
 
+    /**
+     * 开始批量修改，到 endBatch 之前的通知只记录，结束时合并成一次分发，可以嵌套；只能在主线程调用
+     */
+    public void beginBatch() {
+        mBatchDepth++;
+    }
+
+    /**
+     * 结束批量修改，最外层结束时马上分发合并的通知
+     */
+    public void endBatch() {
+        if (mBatchDepth == 0) {
+            throw new IllegalStateException("endBatch without beginBatch");
+        }
+        if (--mBatchDepth == 0) {
+            flushNotifications();
+        }
+    }
+
+    /**
+     * 设置是否把通知合并到下一帧分发，默认合并；关掉之后每次通知马上分发
+     */
+    public void setCoalesceNotifications(boolean coalesce) {
+        isCoalesceNotifications = coalesce;
+        if (!coalesce && mBatchDepth == 0) {
+            flushNotifications();
+        }
+    }
+
+    /**
+     * 马上分发还没分发的通知，比如改完数据马上要读取布局的子View
+     */
+    public void flushNotifications() {
+        if (!XExecutors.isMainThread()) {
+            XExecutors.mainHandler().post(new Runnable() {
+                @Override
+                public void run() {
+                    flushNotifications();
+                }
+            });
+            return;
+        }
+        if (mNotifyScheduler != null) {
+            mNotifyScheduler.cancel();
+        }
+        if (!mPendingUpdates.isEmpty()) {
+            mPendingUpdates.dispatch(mDispatcher);
+        }
+    }
+
+    /**
+     * 是否还有没分发的通知，这时布局里面的位置和个数还是改之前的，不能按布局的位置绑定
+     */
+    public boolean hasPendingUpdates() {
+        return !mPendingUpdates.isEmpty();
+    }
+
+    /**
+     * 开始分发差异结果，之前合并的先分发，之后的每一步马上分发
+     */
+    void beginDiffDispatch() {
+        flushNotifications();
+        isDispatchingDiff = true;
+    }
+
+    void endDiffDispatch() {
+        isDispatchingDiff = false;
+    }
+
+    /**
+     * 记录了一个通知，批量修改中等结束，否则合并到下一帧
+     */
+    private void onUpdate() {
+        if (isDispatchingDiff) {
+            flushNotifications();
+            return;
+        }
+        if (mBatchDepth > 0) {
+            return;
+        }
+        if (!isCoalesceNotifications) {
+            flushNotifications();
+            return;
+        }
+        if (mNotifyScheduler == null) {
+            mNotifyScheduler = new FrameScheduler(new Runnable() {
+                @Override
+                public void run() {
+                    flushNotifications();
+                }
+            });
+        }
+        mNotifyScheduler.schedule();
+    }
+
     /**
      * 内容改变
      */
     public void notifyDataSetChanged() {
-        mObservable.notifyChanged();
+        if (!XExecutors.isMainThread()) {
+            XExecutors.mainHandler().post(new Runnable() {
+                @Override
+                public void run() {
+                    notifyDataSetChanged();
+                }
+            });
+            return;
+        }
+        mPendingUpdates.changeAll();
+        onUpdate();
+    }
+
+    /**
+     * 插入一个条目
+     */
+    public void notifyItemInserted(int position) {
+        notifyItemRangeInserted(position, 1);
+    }
+
+    /**
+     * 插入多个条目
+     */
+    public void notifyItemRangeInserted(final int positionStart, final int itemCount) {
+        if (!XExecutors.isMainThread()) {
+            XExecutors.mainHandler().post(new Runnable() {
+                @Override
+                public void run() {
+                    notifyItemRangeInserted(positionStart, itemCount);
+                }
+            });
+            return;
+        }
+        if (itemCount > 0) {
+            mPendingUpdates.insert(positionStart, itemCount);
+            onUpdate();
+        }
+    }
+
+    /**
+     * 移除一个条目
+     */
+    public void notifyItemRemoved(int position) {
+        notifyItemRangeRemoved(position, 1);
+    }
+
+    /**
+     * 移除多个条目
+     */
+    public void notifyItemRangeRemoved(final int positionStart, final int itemCount) {
+        if (!XExecutors.isMainThread()) {
+            XExecutors.mainHandler().post(new Runnable() {
+                @Override
+                public void run() {
+                    notifyItemRangeRemoved(positionStart, itemCount);
+                }
+            });
+            return;
+        }
+        if (itemCount > 0) {
+            mPendingUpdates.remove(positionStart, itemCount);
+            onUpdate();
+        }
+    }
+
+    /**
+     * 一个条目内容改变
+     */
+    public void notifyItemChanged(int position) {
+        notifyItemRangeChanged(position, 1);
+    }
+
+    /**
+     * 多个条目内容改变
+     */
+    public void notifyItemRangeChanged(final int positionStart, final int itemCount) {
+        if (!XExecutors.isMainThread()) {
+            XExecutors.mainHandler().post(new Runnable() {
+                @Override
+                public void run() {
+                    notifyItemRangeChanged(positionStart, itemCount);
+                }
+            });
+            return;
+        }
+        if (itemCount > 0) {
+            mPendingUpdates.change(positionStart, itemCount);
+            onUpdate();
+        }
+    }
+
+    /**
+     * 条目移动位置
+     */
+    public void notifyItemMoved(final int fromPosition, final int toPosition) {
+        if (!XExecutors.isMainThread()) {
+            XExecutors.mainHandler().post(new Runnable() {
+                @Override
+                public void run() {
+                    notifyItemMoved(fromPosition, toPosition);
+                }
+            });
+            return;
+        }
+        if (fromPosition != toPosition) {
+            mPendingUpdates.move(fromPosition, toPosition);
+            onUpdate();
+        }
     }
 
 }
@@ -0,0 +1,72 @@
+package cn.lven.xview.adapter;
+
+import android.database.DataSetObserver;
+import android.database.Observable;
+
+
+/**
+ * 数据监听的分发，普通的DataSetObserver只会收到onChanged
+ */
+
+public class XDataSetObservable extends Observable<DataSetObserver> {
+
+    public void notifyChanged() {
+        synchronized (mObservers) {
+            for (int i = mObservers.size() - 1; i >= 0; i--) {
+                mObservers.get(i).onChanged();
+            }
+        }
+    }
+
+    public void notifyItemRangeInserted(int positionStart, int itemCount) {
+        synchronized (mObservers) {
+            for (int i = mObservers.size() - 1; i >= 0; i--) {
+                DataSetObserver observer = mObservers.get(i);
+                if (observer instanceof XDataSetObserver) {
+                    ((XDataSetObserver) observer).onItemRangeInserted(positionStart, itemCount);
+                } else {
+                    observer.onChanged();
+                }
+            }
+        }
+    }
+
+    public void notifyItemRangeRemoved(int positionStart, int itemCount) {
+        synchronized (mObservers) {
+            for (int i = mObservers.size() - 1; i >= 0; i--) {
+                DataSetObserver observer = mObservers.get(i);
+                if (observer instanceof XDataSetObserver) {
+                    ((XDataSetObserver) observer).onItemRangeRemoved(positionStart, itemCount);
+                } else {
+                    observer.onChanged();
+                }
+            }
+        }
+    }
+
+    public void notifyItemRangeChanged(int positionStart, int itemCount) {
+        synchronized (mObservers) {
+            for (int i = mObservers.size() - 1; i >= 0; i--) {
+                DataSetObserver observer = mObservers.get(i);
+                if (observer instanceof XDataSetObserver) {
+                    ((XDataSetObserver) observer).onItemRangeChanged(positionStart, itemCount);
+                } else {
+                    observer.onChanged();
+                }
+            }
+        }
+    }
+
+    public void notifyItemMoved(int fromPosition, int toPosition) {
+        synchronized (mObservers) {
+            for (int i = mObservers.size() - 1; i >= 0; i--) {
+                DataSetObserver observer = mObservers.get(i);
+                if (observer instanceof XDataSetObserver) {
+                    ((XDataSetObserver) observer).onItemMoved(fromPosition, toPosition);
+                } else {
+                    observer.onChanged();
+                }
+            }
+        }
+    }
+}
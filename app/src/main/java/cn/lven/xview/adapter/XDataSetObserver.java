@@ -0,0 +1,39 @@
+package cn.lven.xview.adapter;
+
+import android.database.DataSetObserver;
+
+
+/**
+ * 数据监听，支持局部刷新，默认全部走onChanged
+ */
+
+public abstract class XDataSetObserver extends DataSetObserver {
+
+    /**
+     * 插入了条目
+     */
+    public void onItemRangeInserted(int positionStart, int itemCount) {
+        onChanged();
+    }
+
+    /**
+     * 移除了条目
+     */
+    public void onItemRangeRemoved(int positionStart, int itemCount) {
+        onChanged();
+    }
+
+    /**
+     * 条目内容改变
+     */
+    public void onItemRangeChanged(int positionStart, int itemCount) {
+        onChanged();
+    }
+
+    /**
+     * 条目移动了位置
+     */
+    public void onItemMoved(int fromPosition, int toPosition) {
+        onChanged();
+    }
+}
@@ -0,0 +1,388 @@
+package cn.lven.xview.adapter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+
+/**
+ * 计算两个列表的差异（Myers算法），得到最少的插入、移除、移动、改变操作
+ * 可以在后台线程计算，再到主线程分发结果
+ */
+
+public final class XDiffUtil {
+    /**
+     * 编辑距离超过这个值就不再找最短路径，直接当作移除和插入
+     */
+    private static final int MAX_EDIT_DISTANCE = 1024;
+    /**
+     * 找移动的条目时最多比较的次数
+     */
+    private static final long MAX_MOVE_COMPARISONS = 1000L * 1000L;
+
+    private XDiffUtil() {
+    }
+
+    /**
+     * 比较的回调，按下标比较新旧列表
+     */
+    public interface Callback {
+        int getOldListSize();
+
+        int getNewListSize();
+
+        /**
+         * 是否是同一个条目，一般比较ID
+         */
+        boolean areItemsTheSame(int oldPosition, int newPosition);
+
+        /**
+         * 同一个条目的内容是否一样，不一样就会重新绑定
+         */
+        boolean areContentsTheSame(int oldPosition, int newPosition);
+    }
+
+    /**
+     * 比较的回调，直接比较条目
+     */
+    public abstract static class ItemCallback<T> {
+        public abstract boolean areItemsTheSame(T oldItem, T newItem);
+
+        public abstract boolean areContentsTheSame(T oldItem, T newItem);
+    }
+
+    /**
+     * 接收差异结果，位置都是按顺序执行前面的操作之后的位置
+     */
+    public interface ListUpdateCallback {
+        void onInserted(int position, int count);
+
+        void onRemoved(int position, int count);
+
+        void onMoved(int fromPosition, int toPosition);
+
+        void onChanged(int position, int count);
+    }
+
+    public static <T> DiffResult calculateDiff(final List<T> oldList, final List<T> newList,
+                                               final ItemCallback<T> callback) {
+        return calculateDiff(new Callback() {
+            @Override
+            public int getOldListSize() {
+                return oldList.size();
+            }
+
+            @Override
+            public int getNewListSize() {
+                return newList.size();
+            }
+
+            @Override
+            public boolean areItemsTheSame(int oldPosition, int newPosition) {
+                return callback.areItemsTheSame(oldList.get(oldPosition), newList.get(newPosition));
+            }
+
+            @Override
+            public boolean areContentsTheSame(int oldPosition, int newPosition) {
+                return callback.areContentsTheSame(oldList.get(oldPosition), newList.get(newPosition));
+            }
+        });
+    }
+
+    public static DiffResult calculateDiff(Callback callback) {
+        return calculateDiff(callback, true);
+    }
+
+    /**
+     * 计算差异
+     *
+     * @param detectMoves 是否找出移动的条目，不找的话移动会变成移除加插入
+     */
+    public static DiffResult calculateDiff(Callback callback, boolean detectMoves) {
+        int oldSize = callback.getOldListSize();
+        int newSize = callback.getNewListSize();
+        int[] oldToNew = new int[oldSize];
+        int[] newToOld = new int[newSize];
+        fill(oldToNew, -1);
+        fill(newToOld, -1);
+
+        // 去掉相同的头和尾，大部分刷新只有中间一小段不一样
+        int start = 0;
+        while (start < oldSize && start < newSize && callback.areItemsTheSame(start, start)) {
+            oldToNew[start] = start;
+            newToOld[start] = start;
+            start++;
+        }
+        int oldEnd = oldSize;
+        int newEnd = newSize;
+        while (oldEnd > start && newEnd > start && callback.areItemsTheSame(oldEnd - 1, newEnd - 1)) {
+            oldEnd--;
+            newEnd--;
+            oldToNew[oldEnd] = newEnd;
+            newToOld[newEnd] = oldEnd;
+        }
+
+        if (oldEnd > start && newEnd > start) {
+            myers(callback, start, oldEnd, start, newEnd, oldToNew, newToOld);
+        }
+        if (detectMoves) {
+            findMoves(callback, start, oldEnd, start, newEnd, oldToNew, newToOld);
+        }
+
+        // 内容是否改变也在这里算好，分发的时候不再回调
+        boolean[] changed = new boolean[newSize];
+        for (int i = 0; i < newSize; i++) {
+            int oldPosition = newToOld[i];
+            if (oldPosition >= 0 && !callback.areContentsTheSame(oldPosition, i)) {
+                changed[i] = true;
+            }
+        }
+        return new DiffResult(oldToNew, newToOld, changed);
+    }
+
+    /**
+     * Myers贪心算法，只保存每一步的有效区间，再回溯出相同的条目
+     */
+    private static void myers(Callback callback, int oldStart, int oldEnd, int newStart, int newEnd,
+                              int[] oldToNew, int[] newToOld) {
+        int n = oldEnd - oldStart;
+        int m = newEnd - newStart;
+        int max = Math.min(n + m, MAX_EDIT_DISTANCE);
+        int offset = max + 1;
+        int[] v = new int[2 * max + 3];
+        List<int[]> trace = new ArrayList<>();
+        int found = -1;
+        for (int d = 0; d <= max && found < 0; d++) {
+            for (int k = -d; k <= d; k += 2) {
+                int x;
+                if (k == -d || (k != d && v[offset + k - 1] < v[offset + k + 1])) {
+                    x = v[offset + k + 1];
+                } else {
+                    x = v[offset + k - 1] + 1;
+                }
+                int y = x - k;
+                while (x < n && y < m && callback.areItemsTheSame(oldStart + x, newStart + y)) {
+                    x++;
+                    y++;
+                }
+                v[offset + k] = x;
+                if (x >= n && y >= m) {
+                    found = d;
+                }
+            }
+            int[] snapshot = new int[2 * d + 1];
+            System.arraycopy(v, offset - d, snapshot, 0, snapshot.length);
+            trace.add(snapshot);
+        }
+        if (found < 0) {
+            // 差异太大，全部当作移除和插入
+            return;
+        }
+        int x = n;
+        int y = m;
+        for (int d = found; d > 0; d--) {
+            int[] prev = trace.get(d - 1);
+            int k = x - y;
+            int prevK;
+            if (k == -d || (k != d && prev[k - 1 + d - 1] < prev[k + 1 + d - 1])) {
+                prevK = k + 1;
+            } else {
+                prevK = k - 1;
+            }
+            int prevX = prev[prevK + d - 1];
+            int prevY = prevX - prevK;
+            while (x > prevX && y > prevY) {
+                x--;
+                y--;
+                oldToNew[oldStart + x] = newStart + y;
+                newToOld[newStart + y] = oldStart + x;
+            }
+            x = prevX;
+            y = prevY;
+        }
+        while (x > 0 && y > 0) {
+            x--;
+            y--;
+            oldToNew[oldStart + x] = newStart + y;
+            newToOld[newStart + y] = oldStart + x;
+        }
+    }
+
+    /**
+     * 移除的条目如果在插入里面能找到，就当作移动
+     */
+    private static void findMoves(Callback callback, int oldStart, int oldEnd, int newStart, int newEnd,
+                                  int[] oldToNew, int[] newToOld) {
+        int removed = 0;
+        int inserted = 0;
+        for (int i = oldStart; i < oldEnd; i++) {
+            if (oldToNew[i] < 0) {
+                removed++;
+            }
+        }
+        for (int i = newStart; i < newEnd; i++) {
+            if (newToOld[i] < 0) {
+                inserted++;
+            }
+        }
+        if ((long) removed * inserted > MAX_MOVE_COMPARISONS) {
+            return;
+        }
+        for (int i = oldStart; i < oldEnd; i++) {
+            if (oldToNew[i] >= 0) {
+                continue;
+            }
+            for (int j = newStart; j < newEnd; j++) {
+                if (newToOld[j] < 0 && callback.areItemsTheSame(i, j)) {
+                    oldToNew[i] = j;
+                    newToOld[j] = i;
+                    break;
+                }
+            }
+        }
+    }
+
+    private static void fill(int[] array, int value) {
+        for (int i = 0; i < array.length; i++) {
+            array[i] = value;
+        }
+    }
+
+    /**
+     * 差异结果
+     */
+    public static class DiffResult {
+        private final int[] mOldToNew;
+        private final int[] mNewToOld;
+        private final boolean[] mChanged;
+
+        DiffResult(int[] oldToNew, int[] newToOld, boolean[] changed) {
+            mOldToNew = oldToNew;
+            mNewToOld = newToOld;
+            mChanged = changed;
+        }
+
+        /**
+         * 旧位置对应的新位置，被移除了就是-1
+         */
+        public int convertOldPositionToNew(int oldPosition) {
+            return mOldToNew[oldPosition];
+        }
+
+        /**
+         * 新位置对应的旧位置，新插入的就是-1
+         */
+        public int convertNewPositionToOld(int newPosition) {
+            return mNewToOld[newPosition];
+        }
+
+        /**
+         * 分发给适配器，每一步马上通知，不合并到下一帧
+         */
+        public void dispatchUpdatesTo(final XBaseAdapter adapter) {
+            adapter.beginDiffDispatch();
+            try {
+                dispatchToAdapter(adapter);
+            } finally {
+                adapter.endDiffDispatch();
+            }
+        }
+
+        private void dispatchToAdapter(final XBaseAdapter adapter) {
+            dispatchUpdatesTo(new ListUpdateCallback() {
+                @Override
+                public void onInserted(int position, int count) {
+                    adapter.notifyItemRangeInserted(position, count);
+                }
+
+                @Override
+                public void onRemoved(int position, int count) {
+                    adapter.notifyItemRangeRemoved(position, count);
+                }
+
+                @Override
+                public void onMoved(int fromPosition, int toPosition) {
+                    adapter.notifyItemMoved(fromPosition, toPosition);
+                }
+
+                @Override
+                public void onChanged(int position, int count) {
+                    adapter.notifyItemRangeChanged(position, count);
+                }
+            });
+        }
+
+        /**
+         * 按顺序分发：先从后往前移除，再从前往后插入和移动，最后是内容改变
+         * 插入和移动的时候，前面的位置都已经是新列表的位置了
+         */
+        public void dispatchUpdatesTo(ListUpdateCallback callback) {
+            int oldSize = mOldToNew.length;
+            int newSize = mNewToOld.length;
+            // 当前列表里面每个位置对应的旧位置，插入的用 -1 - 新位置 表示
+            int[] working = new int[oldSize + newSize];
+            int size = 0;
+            for (int i = 0; i < oldSize; i++) {
+                if (mOldToNew[i] >= 0) {
+                    working[size++] = i;
+                }
+            }
+            // 移除
+            int end = oldSize;
+            while (end > 0) {
+                if (mOldToNew[end - 1] >= 0) {
+                    end--;
+                    continue;
+                }
+                int start = end - 1;
+                while (start > 0 && mOldToNew[start - 1] < 0) {
+                    start--;
+                }
+                callback.onRemoved(start, end - start);
+                end = start;
+            }
+            // 插入和移动
+            int position = 0;
+            while (position < newSize) {
+                int oldPosition = mNewToOld[position];
+                if (oldPosition < 0) {
+                    int count = 1;
+                    while (position + count < newSize && mNewToOld[position + count] < 0) {
+                        count++;
+                    }
+                    System.arraycopy(working, position, working, position + count, size - position);
+                    for (int i = 0; i < count; i++) {
+                        working[position + i] = -1 - (position + i);
+                    }
+                    size += count;
+                    callback.onInserted(position, count);
+                    position += count;
+                    continue;
+                }
+                if (working[position] != oldPosition) {
+                    int from = position + 1;
+                    while (working[from] != oldPosition) {
+                        from++;
+                    }
+                    System.arraycopy(working, position, working, position + 1, from - position);
+                    working[position] = oldPosition;
+                    callback.onMoved(from, position);
+                }
+                position++;
+            }
+            // 内容改变
+            position = 0;
+            while (position < newSize) {
+                if (!mChanged[position]) {
+                    position++;
+                    continue;
+                }
+                int count = 1;
+                while (position + count < newSize && mChanged[position + count]) {
+                    count++;
+                }
+                callback.onChanged(position, count);
+                position += count;
+            }
+        }
+    }
+}
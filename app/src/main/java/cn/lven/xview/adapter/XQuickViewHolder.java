@@ -4,13 +4,18 @@ import android.graphics.Bitmap;
 import android.graphics.Paint;
 import android.graphics.Typeface;
 import android.text.TextUtils;
-import android.util.SparseArray;
 import android.view.View;
+import android.view.ViewGroup;
 import android.widget.Checkable;
 import android.widget.ImageView;
 import android.widget.TextView;
 
-import java.lang.ref.WeakReference;
+import cn.lven.xview.R;
+import cn.lven.xview.image.CircleTransformation;
+import cn.lven.xview.image.RoundedTransformation;
+import cn.lven.xview.image.Transformation;
+import cn.lven.xview.image.XImageLoader;
+import cn.lven.xview.text.XTextPrecomputer;
 
 
 /**
@@ -18,7 +23,11 @@ import java.lang.ref.WeakReference;
  */
 
 public class XQuickViewHolder {
-    private SparseArray<WeakReference<View>> mViews;
+    private static final Transformation CIRCLE = new CircleTransformation();
+    /**
+     * 缓存条目里面的View，和条目的View生命周期一样，直接强引用
+     */
+    private final ViewCache<View> mViews;
     private int mLayoutId;
     private View itemView;
 
@@ -27,10 +36,67 @@ public class XQuickViewHolder {
     }
 
     public XQuickViewHolder(View itemView, int layoutId) {
+        this(itemView, layoutId, false);
+    }
+
+    /**
+     * @param prebuild 是否创建时就遍历一次，把所有有ID的View缓存起来
+     */
+    public XQuickViewHolder(View itemView, int layoutId, boolean prebuild) {
         this.itemView = itemView;
-        mViews = new SparseArray<>();
+        mViews = new ViewCache<>(new ViewCache.Finder<View>() {
+            @Override
+            public View find(int id) {
+                return XQuickViewHolder.this.itemView.findViewById(id);
+            }
+        }, 8);
         this.mLayoutId = layoutId;
+        if (prebuild) {
+            prebuildViews();
+        }
+    }
 
+    /**
+     * 获取条目View上保存的XQuickViewHolder，没有就创建一个保存起来
+     * View复用或者重新绑定时使用同一个，缓存的View不用重新查找
+     */
+    public static XQuickViewHolder get(View itemView, int layoutId) {
+        return get(itemView, layoutId, false);
+    }
+
+    /**
+     * @param prebuild 第一次创建时是否遍历一次条目，把所有有ID的View缓存起来
+     */
+    public static XQuickViewHolder get(View itemView, int layoutId, boolean prebuild) {
+        Object tag = itemView.getTag(R.id.xview_holder);
+        if (tag instanceof XQuickViewHolder) {
+            return (XQuickViewHolder) tag;
+        }
+        XQuickViewHolder holder = new XQuickViewHolder(itemView, layoutId, prebuild);
+        itemView.setTag(R.id.xview_holder, holder);
+        return holder;
+    }
+
+    /**
+     * 遍历一次条目的View树，缓存所有有ID的View，之后getView不再需要findViewById
+     */
+    public void prebuildViews() {
+        collectViews(itemView);
+    }
+
+    private void collectViews(View view) {
+        int id = view.getId();
+        // 和findViewById一样，前面找到的优先
+        if (id != View.NO_ID) {
+            mViews.putIfAbsent(id, view);
+        }
+        if (view instanceof ViewGroup) {
+            ViewGroup group = (ViewGroup) view;
+            int count = group.getChildCount();
+            for (int i = 0; i < count; i++) {
+                collectViews(group.getChildAt(i));
+            }
+        }
     }
 
     public int getLayoutId() {
@@ -90,23 +156,18 @@ public class XQuickViewHolder {
      * 根据ID获取条目里面的View
      */
     public <T extends View> T getView(int viewId) {
-        WeakReference<View> viewWeakReference = mViews.get(viewId);
-        View view = null;
-        if (viewWeakReference == null) {
-            view = itemView.findViewById(viewId);
-            if (view != null) {
-                mViews.put(viewId, new WeakReference<>(view));
-            }
-        } else {
-            view = viewWeakReference.get();
-        }
-        return (T) view;
+        return (T) mViews.get(viewId);
     }
 
+    /**
+     * 设置文字，有预先计算好的排版（XTextPrecomputer）就直接用
+     */
     public XQuickViewHolder setText(int viewId, CharSequence text) {
         TextView tv = getView(viewId);
         if (tv != null && !TextUtils.isEmpty(text)) {
-            tv.setText(text);
+            if (!XTextPrecomputer.getInstance().apply(tv, text)) {
+                tv.setText(text);
+            }
         }
         return this;
     }
@@ -255,6 +316,8 @@ public class XQuickViewHolder {
      */
     public XQuickViewHolder setImageResource(int viewId, int imageResId) {
         ImageView imageView = getView(viewId);
+        // 取消之前还没完成的加载，不然会被覆盖
+        XImageLoader.getInstance(imageView.getContext()).clear(imageView);
         imageView.setImageResource(imageResId);
         return this;
     }
@@ -264,6 +327,7 @@ public class XQuickViewHolder {
      */
     public XQuickViewHolder setImageBitmap(int viewId, Bitmap bitmap) {
         ImageView imageView = getView(viewId);
+        XImageLoader.getInstance(imageView.getContext()).clear(imageView);
         imageView.setImageBitmap(bitmap);
         return this;
     }
@@ -272,18 +336,14 @@ public class XQuickViewHolder {
      * 根据URL加载图片
      */
     public XQuickViewHolder displayImage(int viewId, String url, int errorResId) {
-        ImageView imageView = getView(viewId);
-        // TODO 用自己的图片加载
-        return this;
+        return displayImage(viewId, url, errorResId, null);
     }
 
     /**
      * 根据URL加载图片
      */
     public XQuickViewHolder displayImage(int viewId, String url) {
-        ImageView imageView = getView(viewId);
-        // TODO 用自己的图片加载
-        return this;
+        return displayImage(viewId, url, 0, null);
     }
 
     /**
@@ -291,7 +351,10 @@ public class XQuickViewHolder {
      */
     public XQuickViewHolder displayImage(int viewId, int resId) {
         ImageView imageView = getView(viewId);
-        // TODO 用自己的图片加载
+        if (imageView != null) {
+            // 取消之前还没完成的加载，不然会被覆盖
+            XImageLoader.getInstance(imageView.getContext()).display(imageView, resId);
+        }
         return this;
     }
 
@@ -299,19 +362,27 @@ public class XQuickViewHolder {
      * 根据URL加载圆形图片
      */
     public XQuickViewHolder displayCircleImage(int viewId, String url, int errorResId) {
-        ImageView imageView = getView(viewId);
-        // TODO 用自己的图片加载
-        return this;
+        return displayImage(viewId, url, errorResId, CIRCLE);
     }
 
     /**
      * 根据URL加载圆角图片
      */
     public XQuickViewHolder displayRadiusImage(int viewId, String url, int errorResId, int radius) {
+        return displayImage(viewId, url, errorResId, new RoundedTransformation(radius));
+    }
+
+    /**
+     * 根据URL加载图片，条目重新绑定时会取消之前的加载
+     *
+     * @param transformation 图片的变换，没有传null
+     */
+    public XQuickViewHolder displayImage(int viewId, String url, int errorResId, Transformation transformation) {
         ImageView imageView = getView(viewId);
-        // TODO 用自己的图片加载
+        if (imageView != null) {
+            XImageLoader.getInstance(imageView.getContext()).display(imageView, url, errorResId, transformation);
+        }
         return this;
     }
 
-
 }
@@ -0,0 +1,31 @@
+package cn.lven.xview.image;
+
+import android.graphics.Bitmap;
+import android.util.LruCache;
+
+
+/**
+ * 图片的内存缓存，按占用的字节数淘汰最久没用的
+ */
+
+public class BitmapLruCache extends LruCache<String, Bitmap> {
+
+    /**
+     * @param maxSize 最多占用的字节数
+     */
+    public BitmapLruCache(int maxSize) {
+        super(maxSize);
+    }
+
+    /**
+     * 默认大小：最大可用内存的1/8
+     */
+    public static int defaultMaxSize() {
+        return (int) Math.min(Runtime.getRuntime().maxMemory() / 8, Integer.MAX_VALUE);
+    }
+
+    @Override
+    protected int sizeOf(String key, Bitmap value) {
+        return value.getByteCount();
+    }
+}
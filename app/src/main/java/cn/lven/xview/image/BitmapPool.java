@@ -0,0 +1,191 @@
+package cn.lven.xview.image;
+
+import android.annotation.TargetApi;
+import android.graphics.Bitmap;
+import android.os.Build;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+
+/**
+ * 按大小分桶缓存不用的Bitmap，解码（inBitmap）和圆形、圆角变换时复用，滑动时不用一直创建新的
+ * 4.4以上按占用的字节数分桶，只要够大就能复用；以下只能复用宽高和格式完全一样的
+ */
+
+public class BitmapPool {
+    private final long mMaxSize;
+    private long mSize;
+    private final HashMap<Long, ArrayList<Bitmap>> mBuckets = new HashMap<>();
+    /**
+     * 放进来的顺序，满了先淘汰最早的
+     */
+    private final ArrayList<Bitmap> mOrder = new ArrayList<>();
+    private int mHitCount;
+    private int mMissCount;
+
+    /**
+     * @param maxSize 最多占用的字节数
+     */
+    public BitmapPool(long maxSize) {
+        mMaxSize = maxSize;
+    }
+
+    /**
+     * 默认大小：最大可用内存的1/16
+     */
+    public static long defaultMaxSize() {
+        return Runtime.getRuntime().maxMemory() / 16;
+    }
+
+    /**
+     * 取一个能放下这个尺寸的Bitmap，已经改成这个尺寸，内容没有清空
+     *
+     * @return 没有返回null
+     */
+    public synchronized Bitmap get(int width, int height, Bitmap.Config config) {
+        if (width <= 0 || height <= 0) {
+            return null;
+        }
+        Bitmap bitmap;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
+            bitmap = getReconfigurable(width, height, config);
+        } else {
+            bitmap = take(exactKey(width, height, config), 0);
+        }
+        if (bitmap == null) {
+            mMissCount++;
+        } else {
+            mHitCount++;
+        }
+        return bitmap;
+    }
+
+    /**
+     * 取一个清空了内容的Bitmap，没有就创建一个
+     */
+    public Bitmap getClean(int width, int height, Bitmap.Config config) {
+        Bitmap bitmap = get(width, height, config);
+        if (bitmap == null) {
+            return Bitmap.createBitmap(width, height, config);
+        }
+        bitmap.eraseColor(0);
+        return bitmap;
+    }
+
+    @TargetApi(Build.VERSION_CODES.KITKAT)
+    private Bitmap getReconfigurable(int width, int height, Bitmap.Config config) {
+        long needed = (long) width * height * bytesPerPixel(config);
+        long bucket = bucketOf(needed);
+        // 最多浪费到4倍，再大的不用
+        for (long b = bucket; b <= bucket + 1; b++) {
+            Bitmap bitmap = take(b, needed);
+            if (bitmap != null) {
+                bitmap.reconfigure(width, height, config);
+                return bitmap;
+            }
+        }
+        return null;
+    }
+
+    private Bitmap take(long key, long needed) {
+        ArrayList<Bitmap> bucket = mBuckets.get(key);
+        if (bucket == null) {
+            return null;
+        }
+        for (int i = bucket.size() - 1; i >= 0; i--) {
+            Bitmap bitmap = bucket.get(i);
+            if (needed == 0 || allocationSize(bitmap) >= needed) {
+                bucket.remove(i);
+                mOrder.remove(bitmap);
+                mSize -= allocationSize(bitmap);
+                return bitmap;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 放入一个不再使用的Bitmap，不能复用的直接回收
+     */
+    public synchronized void put(Bitmap bitmap) {
+        if (bitmap == null || bitmap.isRecycled()) {
+            return;
+        }
+        long size = allocationSize(bitmap);
+        if (!bitmap.isMutable() || size > mMaxSize || mOrder.contains(bitmap)) {
+            return;
+        }
+        long key = Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT
+                ? bucketOf(size) : exactKey(bitmap.getWidth(), bitmap.getHeight(), bitmap.getConfig());
+        ArrayList<Bitmap> bucket = mBuckets.get(key);
+        if (bucket == null) {
+            bucket = new ArrayList<>();
+            mBuckets.put(key, bucket);
+        }
+        bucket.add(bitmap);
+        mOrder.add(bitmap);
+        mSize += size;
+        trimToSize(mMaxSize);
+    }
+
+    private void trimToSize(long maxSize) {
+        while (mSize > maxSize && !mOrder.isEmpty()) {
+            Bitmap bitmap = mOrder.remove(0);
+            for (ArrayList<Bitmap> bucket : mBuckets.values()) {
+                if (bucket.remove(bitmap)) {
+                    break;
+                }
+            }
+            mSize -= allocationSize(bitmap);
+            bitmap.recycle();
+        }
+    }
+
+    /**
+     * 清空，内存不够时调用
+     */
+    public synchronized void clear() {
+        trimToSize(0);
+    }
+
+    public synchronized long size() {
+        return mSize;
+    }
+
+    public synchronized int getHitCount() {
+        return mHitCount;
+    }
+
+    public synchronized int getMissCount() {
+        return mMissCount;
+    }
+
+    private static long allocationSize(Bitmap bitmap) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
+            return bitmap.getAllocationByteCount();
+        }
+        return bitmap.getByteCount();
+    }
+
+    /**
+     * 字节数所在的桶，2的次方
+     */
+    static long bucketOf(long size) {
+        return 64 - Long.numberOfLeadingZeros(Math.max(size - 1, 0));
+    }
+
+    private static long exactKey(int width, int height, Bitmap.Config config) {
+        return ((long) width << 32) | ((long) height << 4) | (config == null ? 0 : config.ordinal() + 1);
+    }
+
+    private static int bytesPerPixel(Bitmap.Config config) {
+        if (config == Bitmap.Config.ALPHA_8) {
+            return 1;
+        }
+        if (config == Bitmap.Config.RGB_565 || config == Bitmap.Config.ARGB_4444) {
+            return 2;
+        }
+        return 4;
+    }
+}
@@ -0,0 +1,49 @@
+package cn.lven.xview.image;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapShader;
+import android.graphics.Canvas;
+import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.graphics.Shader;
+
+
+/**
+ * 圆形图片，居中裁剪
+ */
+
+public class CircleTransformation implements Transformation {
+
+    @Override
+    public Bitmap transform(BitmapPool pool, Bitmap source, int width, int height) {
+        int size = Math.min(width, height);
+        if (size <= 0) {
+            size = Math.min(source.getWidth(), source.getHeight());
+        }
+        Bitmap result = pool.getClean(size, size, Bitmap.Config.ARGB_8888);
+        Paint paint = createShaderPaint(source, size, size);
+        float radius = size / 2f;
+        new Canvas(result).drawCircle(radius, radius, radius, paint);
+        return result;
+    }
+
+    @Override
+    public String getKey() {
+        return "circle";
+    }
+
+    /**
+     * 居中裁剪到目标大小的画笔，直接用原图画，不用先创建一个缩放之后的Bitmap
+     */
+    static Paint createShaderPaint(Bitmap source, int width, int height) {
+        BitmapShader shader = new BitmapShader(source, Shader.TileMode.CLAMP, Shader.TileMode.CLAMP);
+        float scale = Math.max((float) width / source.getWidth(), (float) height / source.getHeight());
+        Matrix matrix = new Matrix();
+        matrix.setScale(scale, scale);
+        matrix.postTranslate((width - source.getWidth() * scale) / 2, (height - source.getHeight() * scale) / 2);
+        shader.setLocalMatrix(matrix);
+        Paint paint = new Paint(Paint.ANTI_ALIAS_FLAG | Paint.FILTER_BITMAP_FLAG);
+        paint.setShader(shader);
+        return paint;
+    }
+}
@@ -0,0 +1,390 @@
+package cn.lven.xview.image;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+
+/**
+ * 磁盘缓存，按最近使用淘汰
+ * 索引是一个内存映射的文件，每个条目一个固定大小的槽（Key的哈希、大小、最近使用的序号），
+ * 启动时直接读索引恢复，不用遍历目录；写入先写临时文件再重命名，不会读到写了一半的文件
+ * 超过大小之后在后台线程淘汰；打开之后在后台清理一次索引里面没有的文件（比如写了一半被杀掉留下的）
+ */
+
+public class DiskLruCache {
+    private static final String INDEX_FILE = "index";
+    private static final String ENTRY_SUFFIX = ".img";
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final int MAGIC = 0x58564443;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 16;
+    // 哈希、大小、最近使用的序号
+    private static final int SLOT_SIZE = 24;
+
+    /**
+     * 写入数据
+     */
+    public interface Writer {
+        void write(OutputStream out) throws IOException;
+    }
+
+    private static class Entry {
+        final long hash;
+        final int slot;
+        long size;
+
+        Entry(long hash, int slot, long size) {
+            this.hash = hash;
+            this.slot = slot;
+            this.size = size;
+        }
+    }
+
+    private final File mDirectory;
+    private final long mMaxSize;
+    private final int mMaxEntries;
+    private final Executor mExecutor;
+    private final RandomAccessFile mIndexFile;
+    private final MappedByteBuffer mIndex;
+    /**
+     * 按访问顺序排列，第一个就是最久没用的
+     */
+    private final LinkedHashMap<Long, Entry> mEntries = new LinkedHashMap<>(16, 0.75f, true);
+    private final ArrayList<Integer> mFreeSlots = new ArrayList<>();
+    private long mSize;
+    private long mAccessSequence;
+    private boolean isTrimScheduled;
+    /**
+     * 正在写的临时文件，清理时不能删
+     */
+    private final HashSet<String> mWritingFiles = new HashSet<>();
+    private final Runnable mTrimTask = new Runnable() {
+        @Override
+        public void run() {
+            synchronized (DiskLruCache.this) {
+                isTrimScheduled = false;
+                trimToSize(mMaxSize);
+            }
+        }
+    };
+
+    /**
+     * @param maxSize    最多占用的字节数
+     * @param maxEntries 最多缓存的个数，决定索引文件的大小
+     * @param executor   淘汰用的后台线程
+     */
+    public DiskLruCache(File directory, long maxSize, int maxEntries, Executor executor) throws IOException {
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException("maxEntries must be positive: " + maxEntries);
+        }
+        mDirectory = directory;
+        mMaxSize = maxSize;
+        mMaxEntries = maxEntries;
+        mExecutor = executor;
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("can not create " + directory);
+        }
+        mIndexFile = new RandomAccessFile(new File(directory, INDEX_FILE), "rw");
+        long length = HEADER_SIZE + (long) SLOT_SIZE * maxEntries;
+        boolean isValid = mIndexFile.length() == length;
+        mIndexFile.setLength(length);
+        mIndex = mIndexFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, length);
+        if (isValid && mIndex.getInt(0) == MAGIC && mIndex.getInt(4) == VERSION && mIndex.getInt(8) == maxEntries) {
+            readIndex();
+            // 启动时不遍历目录，在后台清理
+            mExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    removeOrphanFiles();
+                }
+            });
+        } else {
+            resetIndex();
+        }
+    }
+
+    /**
+     * 从映射的索引恢复条目，按最近使用的序号排序
+     */
+    private void readIndex() {
+        List<long[]> slots = new ArrayList<>();
+        for (int slot = 0; slot < mMaxEntries; slot++) {
+            int offset = offset(slot);
+            long hash = mIndex.getLong(offset);
+            if (hash == 0) {
+                mFreeSlots.add(slot);
+                continue;
+            }
+            slots.add(new long[]{hash, slot, mIndex.getLong(offset + 8), mIndex.getLong(offset + 16)});
+        }
+        Collections.sort(slots, new Comparator<long[]>() {
+            @Override
+            public int compare(long[] a, long[] b) {
+                return a[3] < b[3] ? -1 : (a[3] == b[3] ? 0 : 1);
+            }
+        });
+        for (long[] slot : slots) {
+            mEntries.put(slot[0], new Entry(slot[0], (int) slot[1], slot[2]));
+            mSize += slot[2];
+            mAccessSequence = Math.max(mAccessSequence, slot[3]);
+        }
+        // 倒过来，先用前面的槽
+        Collections.reverse(mFreeSlots);
+    }
+
+    /**
+     * 索引不能用了，之前的缓存文件也找不回来，全部删掉
+     */
+    private void resetIndex() {
+        File[] files = mDirectory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                String name = file.getName();
+                if (name.endsWith(ENTRY_SUFFIX) || name.endsWith(TEMP_SUFFIX)) {
+                    file.delete();
+                }
+            }
+        }
+        for (int i = 0; i < HEADER_SIZE + SLOT_SIZE * mMaxEntries; i += 8) {
+            mIndex.putLong(i, 0);
+        }
+        mIndex.putInt(0, MAGIC);
+        mIndex.putInt(4, VERSION);
+        mIndex.putInt(8, mMaxEntries);
+        for (int slot = mMaxEntries - 1; slot >= 0; slot--) {
+            mFreeSlots.add(slot);
+        }
+    }
+
+    /**
+     * 删掉索引里面没有的文件：重命名之后还没写索引、或者清了索引还没删文件时被杀掉留下的，和没写完的临时文件
+     */
+    void removeOrphanFiles() {
+        File[] files = mDirectory.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            String name = file.getName();
+            synchronized (this) {
+                if (name.endsWith(TEMP_SUFFIX)) {
+                    if (!mWritingFiles.contains(name)) {
+                        file.delete();
+                    }
+                } else if (name.endsWith(ENTRY_SUFFIX)) {
+                    // 重命名和写索引在同一个锁里面，这里看到的索引和文件是一致的
+                    long hash = parseHash(name.substring(0, name.length() - ENTRY_SUFFIX.length()));
+                    if (!mEntries.containsKey(hash)) {
+                        file.delete();
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * 获取缓存的文件，没有返回null
+     */
+    public synchronized File get(String key) {
+        long hash = hash(key);
+        Entry entry = mEntries.get(hash);
+        if (entry == null) {
+            return null;
+        }
+        File file = entryFile(hash);
+        if (!file.exists()) {
+            // 被外部删掉了
+            removeEntry(entry);
+            return null;
+        }
+        mIndex.putLong(offset(entry.slot) + 16, ++mAccessSequence);
+        return file;
+    }
+
+    public synchronized boolean contains(String key) {
+        return mEntries.containsKey(hash(key));
+    }
+
+    /**
+     * 写入缓存，写完之后才会替换原来的
+     *
+     * @return 写入失败返回false
+     */
+    public boolean put(String key, Writer writer) {
+        long hash = hash(key);
+        File temp = new File(mDirectory, Long.toHexString(hash) + "." + Thread.currentThread().getId() + TEMP_SUFFIX);
+        synchronized (this) {
+            mWritingFiles.add(temp.getName());
+        }
+        try {
+            return write(hash, temp, writer);
+        } finally {
+            synchronized (this) {
+                mWritingFiles.remove(temp.getName());
+            }
+        }
+    }
+
+    private boolean write(long hash, File temp, Writer writer) {
+        OutputStream out = null;
+        try {
+            out = new BufferedOutputStream(new FileOutputStream(temp));
+            writer.write(out);
+            out.close();
+            out = null;
+        } catch (IOException e) {
+            if (out != null) {
+                try {
+                    out.close();
+                } catch (IOException ignored) {
+                }
+            }
+            temp.delete();
+            return false;
+        }
+        synchronized (this) {
+            File file = entryFile(hash);
+            if (!temp.renameTo(file)) {
+                temp.delete();
+                return false;
+            }
+            long size = file.length();
+            Entry entry = mEntries.get(hash);
+            if (entry != null) {
+                mSize -= entry.size;
+                entry.size = size;
+            } else {
+                if (mFreeSlots.isEmpty()) {
+                    // 索引满了，淘汰最久没用的
+                    removeEntry(mEntries.values().iterator().next());
+                }
+                entry = new Entry(hash, mFreeSlots.remove(mFreeSlots.size() - 1), size);
+                mEntries.put(hash, entry);
+            }
+            mSize += size;
+            int offset = offset(entry.slot);
+            mIndex.putLong(offset + 8, size);
+            mIndex.putLong(offset + 16, ++mAccessSequence);
+            // 哈希最后写，条目才算有效
+            mIndex.putLong(offset, hash);
+            if (mSize > mMaxSize && !isTrimScheduled) {
+                isTrimScheduled = true;
+                mExecutor.execute(mTrimTask);
+            }
+        }
+        return true;
+    }
+
+    public synchronized boolean remove(String key) {
+        Entry entry = mEntries.get(hash(key));
+        if (entry == null) {
+            return false;
+        }
+        removeEntry(entry);
+        return true;
+    }
+
+    private void removeEntry(Entry entry) {
+        mEntries.remove(entry.hash);
+        releaseEntry(entry);
+    }
+
+    /**
+     * 清掉索引的槽，删除文件
+     */
+    private void releaseEntry(Entry entry) {
+        mIndex.putLong(offset(entry.slot), 0);
+        mFreeSlots.add(entry.slot);
+        mSize -= entry.size;
+        entryFile(entry.hash).delete();
+    }
+
+    /**
+     * 淘汰到不超过maxSize
+     */
+    public synchronized void trimToSize(long maxSize) {
+        Iterator<Map.Entry<Long, Entry>> iterator = mEntries.entrySet().iterator();
+        while (mSize > maxSize && iterator.hasNext()) {
+            Entry entry = iterator.next().getValue();
+            iterator.remove();
+            releaseEntry(entry);
+        }
+    }
+
+    public synchronized long size() {
+        return mSize;
+    }
+
+    public synchronized int getEntryCount() {
+        return mEntries.size();
+    }
+
+    public long getMaxSize() {
+        return mMaxSize;
+    }
+
+    /**
+     * 把索引写到磁盘，不调用系统也会自己写
+     */
+    public synchronized void flush() {
+        mIndex.force();
+    }
+
+    public synchronized void close() throws IOException {
+        mIndex.force();
+        mIndexFile.close();
+    }
+
+    private File entryFile(long hash) {
+        return new File(mDirectory, Long.toHexString(hash) + ENTRY_SUFFIX);
+    }
+
+    private static int offset(int slot) {
+        return HEADER_SIZE + slot * SLOT_SIZE;
+    }
+
+    /**
+     * 文件名还原成哈希，不是缓存的文件名返回0
+     */
+    private static long parseHash(String hex) {
+        if (hex.isEmpty() || hex.length() > 16) {
+            return 0;
+        }
+        long hash = 0;
+        for (int i = 0; i < hex.length(); i++) {
+            int digit = Character.digit(hex.charAt(i), 16);
+            if (digit < 0) {
+                return 0;
+            }
+            hash = (hash << 4) | digit;
+        }
+        return hash;
+    }
+
+    /**
+     * 64位FNV-1a哈希，0留给空槽
+     */
+    static long hash(String key) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            hash ^= key.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash == 0 ? 1 : hash;
+    }
+}
@@ -0,0 +1,30 @@
+package cn.lven.xview.image;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+
+/**
+ * 本地文件：file:// 开头或者绝对路径
+ */
+
+public class FileSource implements ImageSource {
+    private static final String SCHEME = "file://";
+
+    @Override
+    public boolean canLoad(String url) {
+        return url.startsWith(SCHEME) || url.startsWith("/");
+    }
+
+    @Override
+    public InputStream open(String url) throws IOException {
+        return new BufferedInputStream(new FileInputStream(toFile(url)));
+    }
+
+    public static File toFile(String url) {
+        return new File(url.startsWith(SCHEME) ? url.substring(SCHEME.length()) : url);
+    }
+}
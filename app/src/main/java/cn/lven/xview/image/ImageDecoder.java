@@ -0,0 +1,81 @@
+package cn.lven.xview.image;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.os.Build;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+
+
+/**
+ * 按目标尺寸缩小解码，不会解码出比需要的大很多的图片
+ */
+
+final class ImageDecoder {
+
+    private ImageDecoder() {
+    }
+
+    /**
+     * @param pool 复用Bitmap的缓存池，可以为空
+     * @return 不是图片返回null
+     */
+    static Bitmap decode(ImageSource source, String url, int targetWidth, int targetHeight,
+                         BitmapPool pool) throws IOException {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        // 先只读尺寸
+        options.inJustDecodeBounds = true;
+        InputStream in = source.open(url);
+        try {
+            BitmapFactory.decodeStream(in, null, options);
+        } finally {
+            closeQuietly(in);
+        }
+        if (options.outWidth <= 0 || options.outHeight <= 0) {
+            return null;
+        }
+        options.inSampleSize = ImageSizes.calculateInSampleSize(options.outWidth, options.outHeight,
+                targetWidth, targetHeight);
+        options.inJustDecodeBounds = false;
+        // 可变的Bitmap以后才能放到缓存池复用
+        options.inMutable = true;
+        // 4.4以下只能复用完全一样大小、不缩放的
+        if (pool != null && (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT || options.inSampleSize == 1)) {
+            int width = (options.outWidth + options.inSampleSize - 1) / options.inSampleSize;
+            int height = (options.outHeight + options.inSampleSize - 1) / options.inSampleSize;
+            options.inBitmap = pool.get(width, height, Bitmap.Config.ARGB_8888);
+        }
+        in = source.open(url);
+        try {
+            Bitmap bitmap = BitmapFactory.decodeStream(in, null, options);
+            if (bitmap == null && options.inBitmap != null) {
+                pool.put(options.inBitmap);
+            }
+            return bitmap;
+        } catch (IllegalArgumentException e) {
+            // 复用的Bitmap不合适，放回去不复用再解码一次
+            if (options.inBitmap == null) {
+                throw e;
+            }
+            pool.put(options.inBitmap);
+            options.inBitmap = null;
+            closeQuietly(in);
+            in = source.open(url);
+            return BitmapFactory.decodeStream(in, null, options);
+        } finally {
+            closeQuietly(in);
+        }
+    }
+
+    static void closeQuietly(Closeable closeable) {
+        if (closeable == null) {
+            return;
+        }
+        try {
+            closeable.close();
+        } catch (IOException e) {
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package cn.lven.xview.image;
+
+import android.graphics.Bitmap;
+
+import java.util.ArrayList;
+import java.util.concurrent.Future;
+
+import cn.lven.xview.util.XExecutors;
+
+
+/**
+ * 一个图片的加载，同一个Key的多个View共用一个
+ */
+
+class ImageRequest implements Runnable {
+    final XImageLoader mLoader;
+    final String mKey;
+    final String mUrl;
+    final int mWidth;
+    final int mHeight;
+    final Transformation mTransformation;
+    /**
+     * 等这张图片的View，只在主线程访问，预取的时候是空的
+     */
+    final ArrayList<ImageTarget> mTargets = new ArrayList<>(1);
+    Future<?> mFuture;
+    volatile boolean isCancelled;
+    /**
+     * 是不是新解码的，不是从磁盘缓存的结果读出来的，只在加载的线程访问
+     */
+    boolean isDecoded;
+
+    ImageRequest(XImageLoader loader, String key, String url, int width, int height,
+                 Transformation transformation) {
+        mLoader = loader;
+        mKey = key;
+        mUrl = url;
+        mWidth = width;
+        mHeight = height;
+        mTransformation = transformation;
+    }
+
+    @Override
+    public void run() {
+        if (isCancelled) {
+            return;
+        }
+        final Bitmap bitmap = mLoader.load(this);
+        XExecutors.mainHandler().post(new Runnable() {
+            @Override
+            public void run() {
+                mLoader.onRequestFinished(ImageRequest.this, bitmap);
+            }
+        });
+        // 先显示，再存到磁盘
+        mLoader.saveResult(this, bitmap);
+    }
+
+    /**
+     * 没有View在等了，还没开始的就不再加载
+     */
+    void cancel() {
+        isCancelled = true;
+        if (mFuture != null) {
+            mFuture.cancel(false);
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package cn.lven.xview.image;
+
+
+/**
+ * 图片尺寸和缓存Key的计算
+ */
+
+public final class ImageSizes {
+
+    private ImageSizes() {
+    }
+
+    /**
+     * 解码的缩放倍数，2的次方，缩放之后的宽高都不小于目标的宽高
+     *
+     * @param targetWidth  小于等于0表示不限制
+     * @param targetHeight 小于等于0表示不限制
+     */
+    public static int calculateInSampleSize(int width, int height, int targetWidth, int targetHeight) {
+        if (width <= 0 || height <= 0) {
+            return 1;
+        }
+        int sampleSize = 1;
+        while (fits(width / (sampleSize * 2), targetWidth) && fits(height / (sampleSize * 2), targetHeight)) {
+            sampleSize *= 2;
+        }
+        return sampleSize;
+    }
+
+    private static boolean fits(int size, int target) {
+        return target <= 0 ? size > 0 : size >= target;
+    }
+
+    /**
+     * 内存缓存的Key，尺寸和变换不一样就是不一样的图片
+     *
+     * @param transformKey 没有变换传null
+     */
+    public static String cacheKey(String url, int width, int height, String transformKey) {
+        StringBuilder builder = new StringBuilder(url.length() + 24);
+        builder.append(url).append('@').append(width).append('x').append(height);
+        if (transformKey != null) {
+            builder.append('#').append(transformKey);
+        }
+        return builder.toString();
+    }
+}
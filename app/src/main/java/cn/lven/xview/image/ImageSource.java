@@ -0,0 +1,22 @@
+package cn.lven.xview.image;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+
+/**
+ * 图片来源，比如本地文件、网络，通过 XImageLoader.addSource 添加
+ * 会在后台线程调用
+ */
+
+public interface ImageSource {
+    /**
+     * 是否能加载这个地址
+     */
+    boolean canLoad(String url);
+
+    /**
+     * 打开图片的数据，解码时会打开两次：一次读尺寸，一次解码
+     */
+    InputStream open(String url) throws IOException;
+}
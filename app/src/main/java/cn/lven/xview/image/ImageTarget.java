@@ -0,0 +1,96 @@
+package cn.lven.xview.image;
+
+import android.util.DisplayMetrics;
+import android.view.ViewGroup;
+import android.view.ViewTreeObserver;
+import android.widget.ImageView;
+
+
+/**
+ * 一次显示：哪个ImageView显示哪张图片，保存在ImageView的Tag上，重新绑定时用来取消
+ */
+
+class ImageTarget implements ViewTreeObserver.OnPreDrawListener {
+    final XImageLoader mLoader;
+    final ImageView mView;
+    final String mUrl;
+    final int mErrorResId;
+    final Transformation mTransformation;
+    int mWidth;
+    int mHeight;
+    ImageRequest mRequest;
+    private boolean isWaitingForSize;
+
+    ImageTarget(XImageLoader loader, ImageView view, String url, int errorResId, Transformation transformation) {
+        mLoader = loader;
+        mView = view;
+        mUrl = url;
+        mErrorResId = errorResId;
+        mTransformation = transformation;
+    }
+
+    /**
+     * 获取目标尺寸，没有布局时用LayoutParams里面固定的宽高
+     *
+     * @return 宽高都不知道返回false
+     */
+    boolean resolveSize() {
+        int width = mView.getWidth();
+        int height = mView.getHeight();
+        ViewGroup.LayoutParams params = mView.getLayoutParams();
+        if (width <= 0 && params != null && params.width > 0) {
+            width = params.width;
+        }
+        if (height <= 0 && params != null && params.height > 0) {
+            height = params.height;
+        }
+        mWidth = Math.max(width, 0);
+        mHeight = Math.max(height, 0);
+        return mWidth > 0 || mHeight > 0;
+    }
+
+    /**
+     * 等布局完成知道尺寸之后再加载
+     */
+    void waitForSize() {
+        isWaitingForSize = true;
+        mView.getViewTreeObserver().addOnPreDrawListener(this);
+    }
+
+    void stopWaitingForSize() {
+        if (!isWaitingForSize) {
+            return;
+        }
+        isWaitingForSize = false;
+        ViewTreeObserver observer = mView.getViewTreeObserver();
+        if (observer.isAlive()) {
+            observer.removeOnPreDrawListener(this);
+        }
+    }
+
+    @Override
+    public boolean onPreDraw() {
+        stopWaitingForSize();
+        if (!resolveSize()) {
+            // 布局之后还是没有尺寸，最大按屏幕的大小
+            DisplayMetrics metrics = mView.getResources().getDisplayMetrics();
+            mWidth = metrics.widthPixels;
+            mHeight = metrics.heightPixels;
+        }
+        mLoader.start(this);
+        return true;
+    }
+
+    /**
+     * 是不是同一张图片
+     */
+    boolean isSame(String url, int errorResId, Transformation transformation) {
+        if (!mUrl.equals(url) || mErrorResId != errorResId) {
+            return false;
+        }
+        if (mTransformation == null || transformation == null) {
+            return mTransformation == transformation;
+        }
+        return mTransformation.getKey().equals(transformation.getKey());
+    }
+}
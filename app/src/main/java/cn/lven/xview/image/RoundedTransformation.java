@@ -0,0 +1,38 @@
+package cn.lven.xview.image;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.RectF;
+
+
+/**
+ * 圆角图片，居中裁剪
+ */
+
+public class RoundedTransformation implements Transformation {
+    private final int mRadius;
+
+    /**
+     * @param radius 圆角的半径，单位px
+     */
+    public RoundedTransformation(int radius) {
+        mRadius = radius;
+    }
+
+    @Override
+    public Bitmap transform(BitmapPool pool, Bitmap source, int width, int height) {
+        if (width <= 0 || height <= 0) {
+            width = source.getWidth();
+            height = source.getHeight();
+        }
+        Bitmap result = pool.getClean(width, height, Bitmap.Config.ARGB_8888);
+        new Canvas(result).drawRoundRect(new RectF(0, 0, width, height), mRadius, mRadius,
+                CircleTransformation.createShaderPaint(source, width, height));
+        return result;
+    }
+
+    @Override
+    public String getKey() {
+        return "radius" + mRadius;
+    }
+}
@@ -0,0 +1,24 @@
+package cn.lven.xview.image;
+
+import android.graphics.Bitmap;
+
+
+/**
+ * 解码之后对图片的变换，比如圆形、圆角，在后台线程调用
+ * 结果的Bitmap从缓存池里面取，原图之后会被放回缓存池，不要再引用
+ */
+
+public interface Transformation {
+    /**
+     * @param pool   取结果的Bitmap用
+     * @param width  目标的宽度
+     * @param height 目标的高度
+     * @return 变换之后的图片
+     */
+    Bitmap transform(BitmapPool pool, Bitmap source, int width, int height);
+
+    /**
+     * 区分不同变换的Key，会拼到缓存的Key里面
+     */
+    String getKey();
+}
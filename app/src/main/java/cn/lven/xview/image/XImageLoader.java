@@ -0,0 +1,526 @@
+package cn.lven.xview.image;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.text.TextUtils;
+import android.widget.ImageView;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.List;
+import java.util.WeakHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import cn.lven.xview.R;
+import cn.lven.xview.util.XExecutors;
+
+
+/**
+ * 图片加载：内存缓存、相同图片合并加载、按ImageView的大小缩小解码、View重新绑定时取消之前的加载
+ * 磁盘缓存两份：不是本地文件的原图，和缩小、变换之后的结果，冷启动时不用重新下载和解码大图
+ * 不再使用的Bitmap放到缓存池，解码和变换时复用
+ * 图片来源通过 addSource 添加，默认支持本地文件
+ * display、prefetch、cancel和clear只能在主线程调用
+ */
+
+public class XImageLoader {
+    private static volatile XImageLoader sInstance;
+    /**
+     * 默认磁盘缓存的大小和个数
+     */
+    public static final long DEFAULT_DISK_CACHE_SIZE = 64 * 1024 * 1024;
+    public static final int DEFAULT_DISK_CACHE_ENTRIES = 4096;
+    private static final String DISK_CACHE_DIR = "xview-image";
+    private static final String SOURCE_KEY_PREFIX = "source:";
+    private static final String RESULT_KEY_PREFIX = "result:";
+    private static final FileSource FILE_SOURCE = new FileSource();
+
+    private final Context mContext;
+    private final BitmapLruCache mMemoryCache;
+    private final List<ImageSource> mSources = new CopyOnWriteArrayList<>();
+    /**
+     * 正在加载的，Key相同的合并成一个
+     */
+    private final HashMap<String, ImageRequest> mRequests = new HashMap<>();
+    private DiskLruCache mDiskCache;
+    private boolean isDiskCacheDisabled;
+    private final BitmapPool mBitmapPool;
+    /**
+     * Bitmap的引用计数：显示在ImageView上、还在分发或者写磁盘都算
+     * 计数为0并且不在内存缓存里面才能放回缓存池，不然会把还在显示的图片覆盖掉
+     * 弱引用Bitmap（Bitmap没有重写equals，按对象比较）：View直接丢掉没有释放的，淘汰之后不再被这里持有，跟着View一起回收
+     */
+    private final WeakHashMap<Bitmap, BitmapRef> mBitmapRefs = new WeakHashMap<>();
+
+    private static class BitmapRef {
+        int count;
+        boolean isCached;
+    }
+
+    public static XImageLoader getInstance(Context context) {
+        if (sInstance == null) {
+            synchronized (XImageLoader.class) {
+                if (sInstance == null) {
+                    sInstance = new XImageLoader(context);
+                }
+            }
+        }
+        return sInstance;
+    }
+
+    /**
+     * 替换默认的加载器，比如修改了缓存大小
+     */
+    public static void setInstance(XImageLoader loader) {
+        sInstance = loader;
+    }
+
+    public XImageLoader(Context context) {
+        this(context, BitmapLruCache.defaultMaxSize());
+    }
+
+    /**
+     * @param memoryCacheSize 内存缓存最多占用的字节数
+     */
+    public XImageLoader(Context context, int memoryCacheSize) {
+        mContext = context.getApplicationContext();
+        mBitmapPool = new BitmapPool(BitmapPool.defaultMaxSize());
+        mMemoryCache = new BitmapLruCache(memoryCacheSize) {
+            @Override
+            protected void entryRemoved(boolean evicted, String key, Bitmap oldValue, Bitmap newValue) {
+                if (oldValue != newValue) {
+                    onCacheRemoved(oldValue);
+                }
+            }
+        };
+        mSources.add(new FileSource());
+    }
+
+    /**
+     * 添加图片来源，后添加的优先
+     */
+    public void addSource(ImageSource source) {
+        mSources.add(0, source);
+    }
+
+    /**
+     * 设置磁盘缓存，传null不使用磁盘缓存
+     */
+    public synchronized void setDiskCache(DiskLruCache diskCache) {
+        mDiskCache = diskCache;
+        isDiskCacheDisabled = diskCache == null;
+    }
+
+    /**
+     * 磁盘缓存，第一次使用时在缓存目录创建，会读文件不要在主线程调用
+     */
+    public synchronized DiskLruCache getDiskCache() {
+        if (mDiskCache == null && !isDiskCacheDisabled) {
+            try {
+                mDiskCache = new DiskLruCache(new File(mContext.getCacheDir(), DISK_CACHE_DIR),
+                        DEFAULT_DISK_CACHE_SIZE, DEFAULT_DISK_CACHE_ENTRIES, XExecutors.background());
+            } catch (IOException e) {
+                isDiskCacheDisabled = true;
+            }
+        }
+        return mDiskCache;
+    }
+
+    public BitmapLruCache getMemoryCache() {
+        return mMemoryCache;
+    }
+
+    public BitmapPool getBitmapPool() {
+        return mBitmapPool;
+    }
+
+    public Context getContext() {
+        return mContext;
+    }
+
+    public void display(ImageView imageView, String url) {
+        display(imageView, url, 0, null);
+    }
+
+    public void display(ImageView imageView, String url, int errorResId) {
+        display(imageView, url, errorResId, null);
+    }
+
+    /**
+     * 显示图片，之前在这个ImageView上的加载会被取消
+     *
+     * @param errorResId     加载失败显示的图片，0表示不显示
+     * @param transformation 图片的变换，没有传null
+     */
+    public void display(ImageView imageView, String url, int errorResId, Transformation transformation) {
+        Object tag = imageView.getTag(R.id.xview_image_request);
+        if (tag instanceof ImageTarget && ((ImageTarget) tag).isSame(url, errorResId, transformation)) {
+            // 同一张图片还在加载，比如条目重新绑定
+            return;
+        }
+        cancel(imageView);
+        if (TextUtils.isEmpty(url)) {
+            showError(imageView, errorResId);
+            return;
+        }
+        ImageTarget target = new ImageTarget(this, imageView, url, errorResId, transformation);
+        imageView.setTag(R.id.xview_image_request, target);
+        if (target.resolveSize()) {
+            start(target);
+        } else {
+            // 清掉复用的View上之前的图片
+            setBitmap(imageView, null);
+            target.waitForSize();
+        }
+    }
+
+    /**
+     * 显示本地资源的图片，之前在这个ImageView上的加载会被取消
+     */
+    public void display(ImageView imageView, int resId) {
+        clear(imageView);
+        imageView.setImageResource(resId);
+    }
+
+    /**
+     * 取消ImageView上的加载并释放显示的图片，直接给ImageView设置图片之前调用，不然会被之前的加载覆盖
+     */
+    public void clear(ImageView imageView) {
+        cancel(imageView);
+        setBitmap(imageView, null);
+    }
+
+    /**
+     * 知道尺寸之后开始加载，内存里面有就直接显示
+     */
+    void start(ImageTarget target) {
+        String key = cacheKey(target.mUrl, target.mWidth, target.mHeight, target.mTransformation);
+        synchronized (mBitmapRefs) {
+            // 取出来马上计数，中间不会被淘汰放到缓存池
+            Bitmap cached = mMemoryCache.get(key);
+            if (cached != null) {
+                target.mView.setTag(R.id.xview_image_request, null);
+                setBitmap(target.mView, cached);
+                return;
+            }
+        }
+        setBitmap(target.mView, null);
+        ImageRequest request = mRequests.get(key);
+        if (request == null) {
+            // 有预取的就合并到预取里面
+            request = submit(key, target.mUrl, target.mWidth, target.mHeight, target.mTransformation);
+        }
+        request.mTargets.add(target);
+        target.mRequest = request;
+    }
+
+    private ImageRequest submit(String key, String url, int width, int height, Transformation transformation) {
+        ImageRequest request = new ImageRequest(this, key, url, width, height, transformation);
+        mRequests.put(key, request);
+        request.mFuture = XExecutors.background().submit(request);
+        return request;
+    }
+
+    private static String cacheKey(String url, int width, int height, Transformation transformation) {
+        return ImageSizes.cacheKey(url, width, height, transformation == null ? null : transformation.getKey());
+    }
+
+    /**
+     * 预取图片到内存缓存，不显示，比如列表快要滚动到的条目
+     * 宽高和变换要和之后显示的ImageView一样，显示的时候才能命中缓存或者合并到这次加载
+     */
+    public void prefetch(String url, int width, int height, Transformation transformation) {
+        if (TextUtils.isEmpty(url) || (width <= 0 && height <= 0)) {
+            return;
+        }
+        String key = cacheKey(url, width, height, transformation);
+        if (mRequests.containsKey(key) || mMemoryCache.get(key) != null) {
+            return;
+        }
+        submit(key, url, width, height, transformation);
+    }
+
+    /**
+     * 取消还没完成的预取，已经有View在等这张图片就继续加载
+     */
+    public void cancelPrefetch(String url, int width, int height, Transformation transformation) {
+        if (TextUtils.isEmpty(url)) {
+            return;
+        }
+        String key = cacheKey(url, width, height, transformation);
+        ImageRequest request = mRequests.get(key);
+        if (request != null && request.mTargets.isEmpty()) {
+            request.cancel();
+            mRequests.remove(key);
+        }
+    }
+
+    /**
+     * 取消ImageView上还没完成的加载，没有其他View等同一张图片时停止加载
+     */
+    public void cancel(ImageView imageView) {
+        Object tag = imageView.getTag(R.id.xview_image_request);
+        if (!(tag instanceof ImageTarget)) {
+            return;
+        }
+        imageView.setTag(R.id.xview_image_request, null);
+        ImageTarget target = (ImageTarget) tag;
+        target.stopWaitingForSize();
+        ImageRequest request = target.mRequest;
+        if (request != null) {
+            request.mTargets.remove(target);
+            if (request.mTargets.isEmpty()) {
+                request.cancel();
+                mRequests.remove(request.mKey);
+            }
+        }
+    }
+
+    /**
+     * 在后台线程加载：磁盘里面缩小变换好的结果 -> 磁盘里面的原图 -> 图片来源
+     * 磁盘缓存的文件读不了（比如刚好被清理了）就删掉这一条，接着从下一级加载
+     */
+    Bitmap load(ImageRequest request) {
+        DiskLruCache diskCache = getDiskCache();
+        try {
+            if (diskCache != null) {
+                // 已经是目标大小了，直接解码
+                Bitmap bitmap = decodeCached(diskCache, RESULT_KEY_PREFIX + request.mKey, 0, 0);
+                if (bitmap != null) {
+                    cacheBitmap(request, bitmap);
+                    return bitmap;
+                }
+            }
+            ImageSource source = findSource(request.mUrl);
+            if (source == null) {
+                return null;
+            }
+            Bitmap bitmap = null;
+            if (diskCache != null && !(source instanceof FileSource)
+                    && getSourceFile(diskCache, source, request.mUrl) != null) {
+                // 从缓存的文件按目标大小解码
+                bitmap = decodeCached(diskCache, SOURCE_KEY_PREFIX + request.mUrl, request.mWidth, request.mHeight);
+            }
+            if (bitmap == null) {
+                bitmap = ImageDecoder.decode(source, request.mUrl, request.mWidth, request.mHeight, mBitmapPool);
+            }
+            if (bitmap != null && request.mTransformation != null) {
+                if (request.isCancelled) {
+                    // 没有变换的不能存到变换之后的Key下面
+                    mBitmapPool.put(bitmap);
+                    return null;
+                }
+                Bitmap transformed = request.mTransformation.transform(mBitmapPool, bitmap,
+                        request.mWidth, request.mHeight);
+                if (transformed != bitmap) {
+                    // 原图不再使用
+                    mBitmapPool.put(bitmap);
+                }
+                bitmap = transformed;
+            }
+            if (bitmap != null) {
+                request.isDecoded = true;
+                cacheBitmap(request, bitmap);
+            }
+            return bitmap;
+        } catch (IOException e) {
+            return null;
+        } catch (OutOfMemoryError e) {
+            // 内存不够先把缓存清掉
+            mMemoryCache.evictAll();
+            mBitmapPool.clear();
+            return null;
+        }
+    }
+
+    /**
+     * 解码磁盘缓存的文件，没有或者读不了返回null，读不了的删掉
+     */
+    private Bitmap decodeCached(DiskLruCache diskCache, String key, int width, int height) {
+        File file = diskCache.get(key);
+        if (file == null) {
+            return null;
+        }
+        Bitmap bitmap = null;
+        try {
+            bitmap = ImageDecoder.decode(FILE_SOURCE, file.getPath(), width, height, mBitmapPool);
+        } catch (IOException e) {
+            // get之后被清理了，或者文件坏了
+        }
+        if (bitmap == null) {
+            diskCache.remove(key);
+        }
+        return bitmap;
+    }
+
+    /**
+     * 放到内存缓存，先计数：分发到View一次，新解码的写磁盘再一次，完成之后各自释放
+     */
+    private void cacheBitmap(ImageRequest request, Bitmap bitmap) {
+        synchronized (mBitmapRefs) {
+            BitmapRef ref = acquire(bitmap, request.isDecoded ? 2 : 1);
+            ref.isCached = true;
+            mMemoryCache.put(request.mKey, bitmap);
+        }
+    }
+
+    private BitmapRef acquire(Bitmap bitmap, int count) {
+        synchronized (mBitmapRefs) {
+            BitmapRef ref = mBitmapRefs.get(bitmap);
+            if (ref == null) {
+                ref = new BitmapRef();
+                mBitmapRefs.put(bitmap, ref);
+            }
+            ref.count += count;
+            return ref;
+        }
+    }
+
+    /**
+     * 释放一次，没人用并且不在内存缓存里面就放回缓存池
+     */
+    void release(Bitmap bitmap) {
+        synchronized (mBitmapRefs) {
+            BitmapRef ref = mBitmapRefs.get(bitmap);
+            if (ref == null || --ref.count > 0) {
+                return;
+            }
+            if (!ref.isCached) {
+                mBitmapRefs.remove(bitmap);
+                mBitmapPool.put(bitmap);
+            }
+        }
+    }
+
+    private void onCacheRemoved(Bitmap bitmap) {
+        synchronized (mBitmapRefs) {
+            BitmapRef ref = mBitmapRefs.get(bitmap);
+            if (ref == null) {
+                return;
+            }
+            ref.isCached = false;
+            if (ref.count <= 0) {
+                mBitmapRefs.remove(bitmap);
+                mBitmapPool.put(bitmap);
+            }
+            // 还有View在显示的只剩弱引用，View释放之后放回缓存池，View直接被丢掉就跟着回收
+        }
+    }
+
+    /**
+     * 给ImageView设置图片，记录显示的Bitmap，换掉之前的那张才能被复用
+     */
+    private void setBitmap(ImageView imageView, Bitmap bitmap) {
+        Object old = imageView.getTag(R.id.xview_image_bitmap);
+        if (old == bitmap) {
+            if (bitmap != null) {
+                imageView.setImageBitmap(bitmap);
+            }
+            return;
+        }
+        if (bitmap != null) {
+            acquire(bitmap, 1);
+        }
+        imageView.setImageBitmap(bitmap);
+        imageView.setTag(R.id.xview_image_bitmap, bitmap);
+        if (old instanceof Bitmap) {
+            release((Bitmap) old);
+        }
+    }
+
+    /**
+     * 原图存到磁盘缓存，下次不用再从来源读取
+     */
+    private File getSourceFile(DiskLruCache diskCache, final ImageSource source, final String url) {
+        String key = SOURCE_KEY_PREFIX + url;
+        File file = diskCache.get(key);
+        if (file != null) {
+            return file;
+        }
+        boolean isSaved = diskCache.put(key, new DiskLruCache.Writer() {
+            @Override
+            public void write(OutputStream out) throws IOException {
+                InputStream in = source.open(url);
+                try {
+                    byte[] buffer = new byte[8192];
+                    int length;
+                    while ((length = in.read(buffer)) != -1) {
+                        out.write(buffer, 0, length);
+                    }
+                } finally {
+                    ImageDecoder.closeQuietly(in);
+                }
+            }
+        });
+        return isSaved ? diskCache.get(key) : null;
+    }
+
+    /**
+     * 新解码的结果存到磁盘缓存，显示之后在后台线程调用
+     */
+    void saveResult(ImageRequest request, final Bitmap bitmap) {
+        if (!request.isDecoded || bitmap == null) {
+            return;
+        }
+        DiskLruCache diskCache = getDiskCache();
+        if (diskCache != null) {
+            diskCache.put(RESULT_KEY_PREFIX + request.mKey, new DiskLruCache.Writer() {
+                @Override
+                public void write(OutputStream out) throws IOException {
+                    // 有透明的用PNG，比如圆形
+                    Bitmap.CompressFormat format = bitmap.hasAlpha() ? Bitmap.CompressFormat.PNG : Bitmap.CompressFormat.JPEG;
+                    if (!bitmap.compress(format, 90, out)) {
+                        throw new IOException("compress failed");
+                    }
+                }
+            });
+        }
+        release(bitmap);
+    }
+
+    private ImageSource findSource(String url) {
+        for (ImageSource source : mSources) {
+            if (source.canLoad(url)) {
+                return source;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 加载完成，回到主线程显示到还在等这张图片的View上
+     */
+    void onRequestFinished(ImageRequest request, Bitmap bitmap) {
+        if (mRequests.get(request.mKey) == request) {
+            mRequests.remove(request.mKey);
+        }
+        for (ImageTarget target : request.mTargets) {
+            if (target.mView.getTag(R.id.xview_image_request) != target) {
+                continue;
+            }
+            target.mView.setTag(R.id.xview_image_request, null);
+            if (bitmap != null) {
+                setBitmap(target.mView, bitmap);
+            } else {
+                showError(target.mView, target.mErrorResId);
+            }
+        }
+        request.mTargets.clear();
+        if (bitmap != null) {
+            // 分发完了，View上的计数已经加上
+            release(bitmap);
+        }
+    }
+
+    private void showError(ImageView imageView, int errorResId) {
+        setBitmap(imageView, null);
+        if (errorResId != 0) {
+            imageView.setImageResource(errorResId);
+        } else {
+            imageView.setImageDrawable(null);
+        }
+    }
+}
@@ -0,0 +1,259 @@
+package cn.lven.xview.text;
+
+import android.annotation.TargetApi;
+import android.graphics.Typeface;
+import android.os.Build;
+import android.text.TextPaint;
+import android.util.LruCache;
+import android.widget.TextView;
+
+import androidx.core.text.PrecomputedTextCompat;
+import androidx.core.widget.TextViewCompat;
+
+import java.util.List;
+import java.util.Locale;
+
+import cn.lven.xview.R;
+import cn.lven.xview.util.XExecutors;
+
+
+/**
+ * 文字排版的预先计算：数据来的时候在后台线程按文字样式算好排版并缓存，
+ * 绑定时直接把算好的结果设置给TextView，主线程测量只需要查找，不用再排版
+ * 只有API 28以上TextView才能直接用算好的排版；以下 setPrecomputedText 还是普通的setText，
+ * 主线程照样排版，所以不计算也不查找
+ * 只缓存普通的String，带样式的文字每次都不一样
+ */
+
+public class XTextPrecomputer {
+    public static final int DEFAULT_MAX_SIZE = 2048;
+
+    private static volatile XTextPrecomputer sInstance;
+
+    private final LruCache<Key, PrecomputedTextCompat> mCache;
+    // 查找时复用的Key，只在主线程用
+    private final Key mLookupKey = new Key();
+
+    public static XTextPrecomputer getInstance() {
+        if (sInstance == null) {
+            synchronized (XTextPrecomputer.class) {
+                if (sInstance == null) {
+                    sInstance = new XTextPrecomputer(DEFAULT_MAX_SIZE);
+                }
+            }
+        }
+        return sInstance;
+    }
+
+    /**
+     * 替换默认的实例，比如修改了缓存个数
+     */
+    public static void setInstance(XTextPrecomputer precomputer) {
+        sInstance = precomputer;
+    }
+
+    /**
+     * @param maxSize 最多缓存的文字个数
+     */
+    public XTextPrecomputer(int maxSize) {
+        mCache = new LruCache<>(maxSize);
+    }
+
+    /**
+     * TextView能不能直接用算好的排版，API 28以上
+     */
+    public static boolean isSupported() {
+        return Build.VERSION.SDK_INT >= Build.VERSION_CODES.P;
+    }
+
+    /**
+     * 取TextView的文字样式，预先计算时用，在主线程调用
+     */
+    public static PrecomputedTextCompat.Params getParams(TextView textView) {
+        return TextViewCompat.getTextMetricsParams(textView);
+    }
+
+    /**
+     * 取TextView的文字样式，保存在TextView上，样式没变就直接用，绑定时不用每次重新创建
+     */
+    @TargetApi(Build.VERSION_CODES.P)
+    private static CachedParams getCachedParams(TextView textView) {
+        Object tag = textView.getTag(R.id.xview_text_params);
+        CachedParams cached = tag instanceof CachedParams ? (CachedParams) tag : null;
+        if (cached == null || !cached.isSameStyle(textView)) {
+            cached = new CachedParams(textView, getParams(textView));
+            textView.setTag(R.id.xview_text_params, cached);
+        }
+        return cached;
+    }
+
+    /**
+     * TextView的样式改了但是没有被检查到时（比如文字方向）调用，下次绑定重新获取
+     */
+    public static void invalidateParams(TextView textView) {
+        textView.setTag(R.id.xview_text_params, null);
+    }
+
+    /**
+     * 在后台线程预先计算一批文字
+     *
+     * @param params 显示这些文字的TextView的样式，通过 getParams 获取
+     */
+    public void precompute(final PrecomputedTextCompat.Params params, List<? extends CharSequence> texts) {
+        if (!isSupported()) {
+            return;
+        }
+        final CharSequence[] copy = texts.toArray(new CharSequence[texts.size()]);
+        XExecutors.background().execute(new Runnable() {
+            @Override
+            public void run() {
+                for (CharSequence text : copy) {
+                    precomputeNow(params, text);
+                }
+            }
+        });
+    }
+
+    /**
+     * 马上计算一个文字，已经有了就直接返回，可以在后台线程调用
+     *
+     * @return 不能缓存的文字返回null
+     */
+    public PrecomputedTextCompat precomputeNow(PrecomputedTextCompat.Params params, CharSequence text) {
+        if (!isSupported() || !(text instanceof String) || text.length() == 0) {
+            return null;
+        }
+        Key key = new Key();
+        key.set((String) text, params, params.hashCode());
+        PrecomputedTextCompat result = mCache.get(key);
+        if (result == null) {
+            result = PrecomputedTextCompat.create(text, params);
+            mCache.put(key, result);
+        }
+        return result;
+    }
+
+    /**
+     * 查找算好的排版
+     *
+     * @return 没有返回null
+     */
+    public PrecomputedTextCompat get(CharSequence text, PrecomputedTextCompat.Params params) {
+        if (!isSupported() || !(text instanceof String)) {
+            return null;
+        }
+        Key key = new Key();
+        key.set((String) text, params, params.hashCode());
+        return mCache.get(key);
+    }
+
+    /**
+     * 给TextView设置算好的排版，在主线程调用
+     * 样式保存在TextView上，查找只用复用的Key，API 28以下直接返回false
+     *
+     * @return 没有算好的或者样式对不上返回false，要自己调用setText
+     */
+    public boolean apply(TextView textView, CharSequence text) {
+        if (!isSupported() || mCache.size() == 0 || !(text instanceof String)) {
+            return false;
+        }
+        CachedParams params = getCachedParams(textView);
+        mLookupKey.set((String) text, params.mParams, params.mHashCode);
+        PrecomputedTextCompat precomputed = mCache.get(mLookupKey);
+        mLookupKey.set(null, null, 0);
+        if (precomputed == null) {
+            return false;
+        }
+        try {
+            TextViewCompat.setPrecomputedText(textView, precomputed);
+            return true;
+        } catch (IllegalArgumentException e) {
+            // 设置之后样式又改了
+            return false;
+        }
+    }
+
+    /**
+     * 清空缓存，比如文字样式改了
+     */
+    public void clear() {
+        mCache.evictAll();
+    }
+
+    public int size() {
+        return mCache.size();
+    }
+
+    private static class Key {
+        String mText;
+        PrecomputedTextCompat.Params mParams;
+        // Params的hashCode要算很多字段，存下来
+        int mParamsHashCode;
+
+        void set(String text, PrecomputedTextCompat.Params params, int paramsHashCode) {
+            mText = text;
+            mParams = params;
+            mParamsHashCode = paramsHashCode;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return mParamsHashCode == key.mParamsHashCode && mText.equals(key.mText)
+                    && (mParams == key.mParams || mParams.equals(key.mParams));
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * mText.hashCode() + mParamsHashCode;
+        }
+    }
+
+    /**
+     * 保存在TextView上的样式，记下创建时会影响排版的属性，只比较不分配内存
+     */
+    @TargetApi(Build.VERSION_CODES.P)
+    private static class CachedParams {
+        final PrecomputedTextCompat.Params mParams;
+        final int mHashCode;
+        private final float mTextSize;
+        private final float mTextScaleX;
+        private final float mTextSkewX;
+        private final float mLetterSpacing;
+        private final int mFlags;
+        private final Typeface mTypeface;
+        private final Locale mLocale;
+        private final String mFontFeatureSettings;
+        private final int mBreakStrategy;
+        private final int mHyphenationFrequency;
+
+        CachedParams(TextView textView, PrecomputedTextCompat.Params params) {
+            TextPaint paint = textView.getPaint();
+            mParams = params;
+            mHashCode = params.hashCode();
+            mTextSize = paint.getTextSize();
+            mTextScaleX = paint.getTextScaleX();
+            mTextSkewX = paint.getTextSkewX();
+            mLetterSpacing = paint.getLetterSpacing();
+            mFlags = paint.getFlags();
+            mTypeface = paint.getTypeface();
+            mLocale = paint.getTextLocale();
+            mFontFeatureSettings = paint.getFontFeatureSettings();
+            mBreakStrategy = textView.getBreakStrategy();
+            mHyphenationFrequency = textView.getHyphenationFrequency();
+        }
+
+        boolean isSameStyle(TextView textView) {
+            TextPaint paint = textView.getPaint();
+            return mTextSize == paint.getTextSize() && mTextScaleX == paint.getTextScaleX()
+                    && mTextSkewX == paint.getTextSkewX() && mLetterSpacing == paint.getLetterSpacing()
+                    && mFlags == paint.getFlags() && mTypeface == paint.getTypeface()
+                    && mLocale == paint.getTextLocale() && mFontFeatureSettings == paint.getFontFeatureSettings()
+                    && mBreakStrategy == textView.getBreakStrategy()
+                    && mHyphenationFrequency == textView.getHyphenationFrequency();
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package cn.lven.xview.util;
+
+import android.annotation.TargetApi;
+import android.os.Build;
+import android.view.Choreographer;
+
+
+/**
+ * 在下一帧执行任务，重复调度只会执行一次
+ * 4.1以上用Choreographer，以下用Handler延迟一帧
+ * 只能在主线程使用
+ */
+
+public class FrameScheduler {
+    private static final long FRAME_DELAY_MS = 16;
+
+    private final Runnable mTask;
+    private final Runnable mRunnable;
+    private Object mFrameCallback;
+    private boolean isScheduled;
+
+    public FrameScheduler(Runnable task) {
+        mTask = task;
+        mRunnable = new Runnable() {
+            @Override
+            public void run() {
+                isScheduled = false;
+                mTask.run();
+            }
+        };
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+            mFrameCallback = FrameCallbackCompat.create(mRunnable);
+        }
+    }
+
+    /**
+     * 下一帧执行，已经调度了就不再重复
+     */
+    public void schedule() {
+        if (isScheduled) {
+            return;
+        }
+        isScheduled = true;
+        if (mFrameCallback != null) {
+            FrameCallbackCompat.post(mFrameCallback);
+        } else {
+            XExecutors.mainHandler().postDelayed(mRunnable, FRAME_DELAY_MS);
+        }
+    }
+
+    /**
+     * 取消还没执行的任务
+     */
+    public void cancel() {
+        if (!isScheduled) {
+            return;
+        }
+        isScheduled = false;
+        if (mFrameCallback != null) {
+            FrameCallbackCompat.remove(mFrameCallback);
+        } else {
+            XExecutors.mainHandler().removeCallbacks(mRunnable);
+        }
+    }
+
+    public boolean isScheduled() {
+        return isScheduled;
+    }
+
+    /**
+     * 单独放一个类，低版本不会加载Choreographer
+     */
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+    private static class FrameCallbackCompat {
+
+        static Object create(final Runnable runnable) {
+            return new Choreographer.FrameCallback() {
+                @Override
+                public void doFrame(long frameTimeNanos) {
+                    runnable.run();
+                }
+            };
+        }
+
+        static void post(Object callback) {
+            Choreographer.getInstance().postFrameCallback((Choreographer.FrameCallback) callback);
+        }
+
+        static void remove(Object callback) {
+            Choreographer.getInstance().removeFrameCallback((Choreographer.FrameCallback) callback);
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package cn.lven.xview.util;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+
+/**
+ * 后台线程池和主线程Handler
+ */
+
+public final class XExecutors {
+    private static final int CPU_COUNT = Runtime.getRuntime().availableProcessors();
+    private static final int POOL_SIZE = Math.max(2, Math.min(CPU_COUNT - 1, 4));
+
+    private static volatile ExecutorService sBackground;
+    private static volatile Handler sMainHandler;
+
+    private XExecutors() {
+    }
+
+    /**
+     * 后台线程池，空闲的线程会被回收
+     */
+    public static ExecutorService background() {
+        if (sBackground == null) {
+            synchronized (XExecutors.class) {
+                if (sBackground == null) {
+                    ThreadPoolExecutor executor = new ThreadPoolExecutor(POOL_SIZE, POOL_SIZE,
+                            30, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+                            new ThreadFactory() {
+                                private final AtomicInteger mCount = new AtomicInteger();
+
+                                @Override
+                                public Thread newThread(Runnable r) {
+                                    Thread thread = new Thread(r, "XView-bg-" + mCount.incrementAndGet());
+                                    thread.setDaemon(true);
+                                    thread.setPriority(Thread.NORM_PRIORITY - 1);
+                                    return thread;
+                                }
+                            });
+                    executor.allowCoreThreadTimeOut(true);
+                    sBackground = executor;
+                }
+            }
+        }
+        return sBackground;
+    }
+
+    /**
+     * 主线程的Handler
+     */
+    public static Handler mainHandler() {
+        if (sMainHandler == null) {
+            synchronized (XExecutors.class) {
+                if (sMainHandler == null) {
+                    sMainHandler = new Handler(Looper.getMainLooper());
+                }
+            }
+        }
+        return sMainHandler;
+    }
+
+    /**
+     * 是否在主线程
+     */
+    public static boolean isMainThread() {
+        return Looper.myLooper() == Looper.getMainLooper();
+    }
+}
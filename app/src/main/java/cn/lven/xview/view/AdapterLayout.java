@@ -7,8 +7,13 @@ import android.util.AttributeSet;
 import android.view.View;
 import android.view.ViewGroup;
 
+import java.util.HashMap;
+
+import cn.lven.xview.R;
 import cn.lven.xview.adapter.XBaseAdapter;
+import cn.lven.xview.adapter.XDataSetObserver;
 import cn.lven.xview.adapter.LifecycleCallbacks;
+import cn.lven.xview.view.metrics.LayoutMetrics;
 
 
 /**
@@ -19,6 +24,48 @@ public abstract class AdapterLayout extends ViewGroup {
     protected XBaseAdapter mAdapter;
     protected DataSetObserver mObserver;
     private boolean isRegister = false;
+    /**
+     * 移除的子View缓存池
+     */
+    private RecycledViewPool mRecycledViewPool = new RecycledViewPool();
+    /**
+     * 是否在后台线程创建条目的View
+     */
+    private boolean isAsyncInflate;
+    private AsyncViewInflater mAsyncInflater;
+    /**
+     * 是否分帧添加子View
+     */
+    private boolean isChunkedAttach;
+    private ChunkedAttacher mChunkedAttacher;
+    /**
+     * 每一帧添加子View最多占用的时间
+     */
+    private long mFrameBudgetNanos = DEFAULT_FRAME_BUDGET_MS * 1000000L;
+    private OnLayoutCompleteListener mLayoutCompleteListener;
+    // 批量添加的时候先不请求布局，添加完再请求一次
+    private boolean isBlockLayoutRequests;
+    private boolean isLayoutRequestedWhileBlocked;
+    /**
+     * 耗时统计，为空时不统计
+     */
+    private LayoutMetrics mMetrics;
+    // 这一次测量中测量的子View个数
+    private int mPassMeasureCount;
+    /**
+     * 按滚动方向预取的条目个数，0不预取
+     */
+    private int mPrefetchCount;
+    private ViewPrefetcher mPrefetcher;
+
+    public static final long DEFAULT_FRAME_BUDGET_MS = 8;
+
+    /**
+     * 子View全部添加完成的监听
+     */
+    public interface OnLayoutCompleteListener {
+        void onLayoutComplete(AdapterLayout layout);
+    }
 
     public AdapterLayout(Context context) {
         this(context, null);
@@ -59,12 +106,65 @@ public abstract class AdapterLayout extends ViewGroup {
         if (adapter == null) {
             throw new NullPointerException("FlowBaseAdapter is null");
         }
+        // 之前合并还没分发的通知先分发，下面会全部重新添加
+        adapter.flushNotifications();
+        if (mAdapter != adapter) {
+            // 换了适配器，之前的View不能再复用
+            clearPrefetch();
+            removeAllViews();
+            mRecycledViewPool.clear();
+        }
         mAdapter = adapter;
-        mObserver = new DataSetObserver() {
+        mObserver = new XDataSetObserver() {
             @Override
             public void onChanged() {
+                clearPrefetch();
                 resetLayout();
             }
+
+            @Override
+            public void onItemRangeInserted(int positionStart, int itemCount) {
+                clearPrefetch();
+                if (isAttaching()) {
+                    // 还在后台创建或分帧添加，取消之后全部刷新
+                    resetLayout();
+                    return;
+                }
+                AdapterLayout.this.onItemRangeInserted(positionStart, itemCount);
+            }
+
+            @Override
+            public void onItemRangeRemoved(int positionStart, int itemCount) {
+                clearPrefetch();
+                if (isAttaching()) {
+                    // 还在后台创建或分帧添加，取消之后全部刷新
+                    resetLayout();
+                    return;
+                }
+                AdapterLayout.this.onItemRangeRemoved(positionStart, itemCount);
+            }
+
+            @Override
+            public void onItemRangeChanged(int positionStart, int itemCount) {
+                clearPrefetch();
+                if (isAttaching()) {
+                    // 还在后台创建或分帧添加，取消之后全部刷新
+                    resetLayout();
+                    return;
+                }
+                AdapterLayout.this.onItemRangeChanged(positionStart, itemCount);
+            }
+
+            @Override
+            public void onItemMoved(int fromPosition, int toPosition) {
+                clearPrefetch();
+                if (isAttaching()) {
+                    // 还在后台创建或分帧添加，取消之后全部刷新
+                    resetLayout();
+                    return;
+                }
+                AdapterLayout.this.onItemMoved(fromPosition, toPosition);
+            }
         };
 
         // 注册监听
@@ -77,6 +177,7 @@ public abstract class AdapterLayout extends ViewGroup {
     @Override
     protected void onDetachedFromWindow() {
         unRegisterAdapter();
+        clearPrefetch();
         super.onDetachedFromWindow();
     }
 
@@ -103,19 +204,623 @@ public abstract class AdapterLayout extends ViewGroup {
     }
 
     /**
-     * 重新添加布局
+     * 重新添加布局，已有的子View会作为convertView传给适配器复用
      */
     protected void resetLayout() {
         if (mAdapter == null) {
             return;
         }
-        removeAllViews();
-        int count = mAdapter.getCount();
+        long start = beginPass(LayoutMetrics.STAGE_RESET);
+        resetChildren();
+        endPass(LayoutMetrics.STAGE_RESET, start);
+    }
+
+    private void resetChildren() {
+        if (mAsyncInflater != null) {
+            mAsyncInflater.cancel();
+        }
+        if (mChunkedAttacher != null) {
+            mChunkedAttacher.cancel();
+        }
+        int count = getLayoutCount(mAdapter.getCount());
+        int oldCount = getChildCount();
+        if (mAdapter.hasStableIds() && oldCount > 0) {
+            // ID稳定时按ID找回原来的子View，只创建新的，一次完成
+            blockLayoutRequests();
+            try {
+                reconcileChildren(count);
+            } finally {
+                unblockLayoutRequests();
+            }
+            dispatchLayoutComplete();
+            return;
+        }
+        if (isChunkedAttach) {
+            if (mChunkedAttacher == null) {
+                mChunkedAttacher = new ChunkedAttacher(this);
+            }
+            mChunkedAttacher.start(count, oldCount);
+            return;
+        }
+        blockLayoutRequests();
+        try {
+            for (int i = 0; i < count; i++) {
+                if (!layoutPosition(i, oldCount, count)) {
+                    return;
+                }
+            }
+            // 多出来的放到缓存池
+            removeItemViews(count, getChildCount() - count);
+        } finally {
+            unblockLayoutRequests();
+        }
+        dispatchLayoutComplete();
+    }
+
+    /**
+     * 按ID调整子View：ID还在的保留并移到新的位置重新绑定，不在的放到缓存池，新的ID再创建
+     * 保留的子View不会从窗口移除，焦点、动画、图片加载都不受影响
+     */
+    private void reconcileChildren(int count) {
+        int childCount = getChildCount();
+        View[] children = new View[childCount];
+        // ID对应的子View下标
+        HashMap<Long, Integer> indexes = new HashMap<>(childCount * 2);
+        for (int i = 0; i < childCount; i++) {
+            View child = getChildAt(i);
+            children[i] = child;
+            long id = getViewItemId(child);
+            if (id != XBaseAdapter.NO_ID && !indexes.containsKey(id)) {
+                indexes.put(id, i);
+            }
+        }
+        View[] keptViews = new View[count];
+        boolean[] kept = new boolean[childCount];
+        for (int i = 0; i < count && !indexes.isEmpty(); i++) {
+            Integer index = indexes.remove(mAdapter.getItemId(i));
+            if (index != null && getViewType(children[index]) == getItemViewType(i)) {
+                keptViews[i] = children[index];
+                kept[index] = true;
+            }
+        }
+        detachAllViewsFromParent();
+        // 先把不要的放到缓存池，新的ID可以复用
+        for (int i = 0; i < childCount; i++) {
+            if (!kept[i]) {
+                removeDetachedView(children[i], false);
+                recycleView(children[i]);
+            }
+        }
         for (int i = 0; i < count; i++) {
-            View view = mAdapter.getView(i, this);
-            view.setFocusable(true);
-            addView(view);
+            View view = keptViews[i];
+            if (view == null) {
+                addItemView(obtainView(i), i);
+                continue;
+            }
+            View bound = getAdapterView(i, view);
+            if (bound == view) {
+                setItemTags(view, i);
+                attachViewToParent(view, i, view.getLayoutParams());
+            } else {
+                // 适配器没有复用，换成新的View
+                removeDetachedView(view, false);
+                recycleView(view);
+                setItemTags(bound, i);
+                addItemView(bound, i);
+            }
+        }
+        requestLayout();
+        invalidate();
+    }
+
+    /**
+     * 绑定或添加某个位置的子View
+     *
+     * @return 后面的交给后台创建了返回false
+     */
+    boolean layoutPosition(int position, int oldCount, int count) {
+        if (position < oldCount) {
+            bindViewAt(position);
+        } else if (isAsyncInflate && mRecycledViewPool.getRecycledViewCount(getItemViewType(position)) == 0) {
+            // 缓存池里面没有，后面的都到后台创建
+            if (mAsyncInflater == null) {
+                mAsyncInflater = new AsyncViewInflater(this);
+            }
+            mAsyncInflater.start(mAdapter, position, count);
+            return false;
+        } else {
+            addItemView(obtainView(position), position);
+        }
+        return true;
+    }
+
+    void onChunkedAttachFinished(int count) {
+        removeItemViews(count, getChildCount() - count);
+        dispatchLayoutComplete();
+    }
+
+    void onAsyncInflateFinished() {
+        dispatchLayoutComplete();
+    }
+
+    private void dispatchLayoutComplete() {
+        if (mLayoutCompleteListener != null) {
+            mLayoutCompleteListener.onLayoutComplete(this);
+        }
+    }
+
+    void blockLayoutRequests() {
+        isBlockLayoutRequests = true;
+    }
+
+    void unblockLayoutRequests() {
+        isBlockLayoutRequests = false;
+        if (isLayoutRequestedWhileBlocked) {
+            isLayoutRequestedWhileBlocked = false;
+            requestLayout();
+        }
+    }
+
+    @Override
+    public void requestLayout() {
+        if (isBlockLayoutRequests) {
+            isLayoutRequestedWhileBlocked = true;
+            return;
+        }
+        super.requestLayout();
+    }
+
+    /**
+     * 插入了条目，只添加新的子View
+     */
+    protected void onItemRangeInserted(int positionStart, int itemCount) {
+        if (mAdapter == null) {
+            return;
+        }
+        int adapterCount = mAdapter.getCount();
+        if (getChildCount() != getLayoutCount(adapterCount - itemCount)) {
+            // 子View和数据对不上，全部刷新
+            resetLayout();
+            return;
+        }
+        int count = getLayoutCount(adapterCount);
+        int end = Math.min(positionStart + itemCount, count);
+        for (int i = positionStart; i < end; i++) {
+            addItemView(obtainView(i), i);
+        }
+        // 超过最大个数的移除掉
+        syncLayoutCount();
+    }
+
+    /**
+     * 移除了条目，只移除对应的子View
+     */
+    protected void onItemRangeRemoved(int positionStart, int itemCount) {
+        if (mAdapter == null) {
+            return;
+        }
+        int adapterCount = mAdapter.getCount();
+        if (getChildCount() != getLayoutCount(adapterCount + itemCount)) {
+            resetLayout();
+            return;
+        }
+        int end = Math.min(positionStart + itemCount, getChildCount());
+        removeItemViews(positionStart, end - positionStart);
+        // 有最大个数限制时，后面的补上来
+        syncLayoutCount();
+    }
+
+    /**
+     * 显示的个数改变之后，只在尾部添加或移除差的子View，其他的不重新绑定
+     */
+    protected void syncLayoutCount() {
+        if (mAdapter == null) {
+            return;
+        }
+        if (isAttaching()) {
+            resetLayout();
+            return;
+        }
+        int count = getLayoutCount(mAdapter.getCount());
+        int childCount = getChildCount();
+        if (childCount == count) {
+            return;
+        }
+        blockLayoutRequests();
+        try {
+            if (childCount > count) {
+                removeItemViews(count, childCount - count);
+            } else {
+                for (int i = childCount; i < count; i++) {
+                    addItemView(obtainView(i), i);
+                }
+            }
+        } finally {
+            unblockLayoutRequests();
+        }
+    }
+
+    /**
+     * 条目内容改变，只重新绑定对应的子View
+     */
+    protected void onItemRangeChanged(int positionStart, int itemCount) {
+        if (mAdapter == null) {
+            return;
+        }
+        if (getChildCount() != getLayoutCount(mAdapter.getCount())) {
+            resetLayout();
+            return;
+        }
+        int end = Math.min(positionStart + itemCount, getChildCount());
+        for (int i = positionStart; i < end; i++) {
+            bindViewAt(i);
+        }
+    }
+
+    /**
+     * 条目移动位置，子View直接换位置
+     */
+    protected void onItemMoved(int fromPosition, int toPosition) {
+        if (mAdapter == null) {
+            return;
+        }
+        int childCount = getChildCount();
+        if (childCount != getLayoutCount(mAdapter.getCount())
+                || fromPosition >= childCount || toPosition >= childCount) {
+            resetLayout();
+            return;
+        }
+        View child = getChildAt(fromPosition);
+        detachViewFromParent(fromPosition);
+        attachViewToParent(child, toPosition, child.getLayoutParams());
+        requestLayout();
+        invalidate();
+    }
+
+    /**
+     * 重新绑定某个位置的子View，类型不一样就换一个
+     */
+    private void bindViewAt(int index) {
+        View oldView = getChildAt(index);
+        int viewType = getItemViewType(index);
+        View view;
+        if (getViewType(oldView) == viewType) {
+            view = getAdapterView(index, oldView);
+            setItemTags(view, index);
+        } else {
+            view = obtainView(index);
+        }
+        if (view != oldView) {
+            removeViewAt(index);
+            recycleView(oldView);
+            addItemView(view, index);
+        }
+    }
+
+    /**
+     * 获取某个位置的View，优先从缓存池里面取
+     */
+    protected View obtainView(int position) {
+        int viewType = getItemViewType(position);
+        View convertView = mRecycledViewPool.getRecycledView(viewType);
+        View view = getAdapterView(position, convertView);
+        if (convertView != null && view != convertView) {
+            mRecycledViewPool.putRecycledView(viewType, convertView);
+        }
+        setItemTags(view, position);
+        return view;
+    }
+
+    /**
+     * 从适配器获取条目的View，统计耗时
+     */
+    View getAdapterView(int position, View convertView) {
+        if (mMetrics == null) {
+            return mAdapter.getView(position, convertView, this);
+        }
+        long start = System.nanoTime();
+        View view = mAdapter.getView(position, convertView, this);
+        mMetrics.record(LayoutMetrics.STAGE_GET_VIEW, System.nanoTime() - start, 1);
+        return view;
+    }
+
+    /**
+     * 在子View上记录条目的类型和ID
+     */
+    void setItemTags(View view, int position) {
+        view.setTag(R.id.xview_view_type, getItemViewType(position));
+        if (mAdapter.hasStableIds()) {
+            view.setTag(R.id.xview_item_id, mAdapter.getItemId(position));
+        }
+    }
+
+    /**
+     * 子View对应条目的ID，没有记录返回 XBaseAdapter.NO_ID
+     */
+    long getViewItemId(View view) {
+        Object id = view.getTag(R.id.xview_item_id);
+        return id instanceof Long ? (Long) id : XBaseAdapter.NO_ID;
+    }
+
+    /**
+     * 后台创建好的View按顺序添加进来，不能在后台创建的这里再创建
+     */
+    void attachInflatedView(int position, View inflatedView) {
+        View view;
+        if (inflatedView == null) {
+            view = obtainView(position);
+        } else {
+            view = getAdapterView(position, inflatedView);
+            if (view != inflatedView) {
+                recycleView(inflatedView);
+            }
+            setItemTags(view, position);
+        }
+        addItemView(view, position);
+    }
+
+    /**
+     * 设置是否在后台线程创建条目的View，适配器要实现 XBaseAdapter.onCreateView
+     * 创建好之后按顺序分批添加，数据改变时取消还没添加的
+     */
+    public void setAsyncInflate(boolean asyncInflate) {
+        isAsyncInflate = asyncInflate;
+        if (!asyncInflate && mAsyncInflater != null && mAsyncInflater.isRunning()) {
+            resetLayout();
         }
     }
 
+    /**
+     * 是否还有View在后台创建
+     */
+    public boolean isAsyncInflating() {
+        return mAsyncInflater != null && mAsyncInflater.isRunning();
+    }
+
+    /**
+     * 是否还有子View没有添加完
+     */
+    public boolean isAttaching() {
+        return isAsyncInflating() || (mChunkedAttacher != null && mChunkedAttacher.isRunning());
+    }
+
+    /**
+     * 设置是否分帧添加子View，每一帧只占用 setFrameBudget 设置的时间，数据很多时不会卡住界面
+     */
+    public void setChunkedAttach(boolean chunkedAttach) {
+        isChunkedAttach = chunkedAttach;
+    }
+
+    /**
+     * 设置每一帧添加子View最多占用的时间，默认8毫秒
+     */
+    public void setFrameBudget(long budgetMs) {
+        mFrameBudgetNanos = Math.max(budgetMs, 1) * 1000000L;
+    }
+
+    long getFrameBudgetNanos() {
+        return mFrameBudgetNanos;
+    }
+
+    /**
+     * 设置耗时统计，为空时不统计
+     * 统计onMeasure、onLayout、resetLayout、适配器getView和后台创建View的耗时，以及每次测量的子View个数
+     */
+    public void setLayoutMetrics(LayoutMetrics metrics) {
+        mMetrics = metrics;
+    }
+
+    public LayoutMetrics getLayoutMetrics() {
+        return mMetrics;
+    }
+
+    /**
+     * 开始统计一个阶段，没有设置统计时返回0
+     *
+     * @param stage LayoutMetrics.STAGE_开头的常量
+     */
+    protected final long beginPass(int stage) {
+        if (mMetrics == null) {
+            return 0;
+        }
+        if (stage == LayoutMetrics.STAGE_MEASURE) {
+            mPassMeasureCount = 0;
+        }
+        return System.nanoTime();
+    }
+
+    /**
+     * 结束统计一个阶段
+     */
+    protected final void endPass(int stage, long startNanos) {
+        if (mMetrics == null || startNanos == 0) {
+            return;
+        }
+        int count = stage == LayoutMetrics.STAGE_MEASURE ? mPassMeasureCount : getChildCount();
+        mMetrics.record(stage, System.nanoTime() - startNanos, count);
+    }
+
+    /**
+     * 记录后台线程创建View的耗时，在主线程调用
+     */
+    void recordInflate(long durationNanos) {
+        if (mMetrics != null) {
+            mMetrics.record(LayoutMetrics.STAGE_INFLATE, durationNanos, 1);
+        }
+    }
+
+    @Override
+    protected void measureChild(View child, int parentWidthMeasureSpec, int parentHeightMeasureSpec) {
+        mPassMeasureCount++;
+        super.measureChild(child, parentWidthMeasureSpec, parentHeightMeasureSpec);
+    }
+
+    @Override
+    protected void measureChildWithMargins(View child, int parentWidthMeasureSpec, int widthUsed,
+                                           int parentHeightMeasureSpec, int heightUsed) {
+        mPassMeasureCount++;
+        super.measureChildWithMargins(child, parentWidthMeasureSpec, widthUsed, parentHeightMeasureSpec, heightUsed);
+    }
+
+    /**
+     * 用给定的参数直接测量子View，不经过LayoutParams
+     */
+    protected void measureChildExactly(View child, int widthMeasureSpec, int heightMeasureSpec) {
+        mPassMeasureCount++;
+        child.measure(widthMeasureSpec, heightMeasureSpec);
+    }
+
+    /**
+     * 设置按滚动方向预取的条目个数，0不预取（默认）
+     * 放在滚动的父布局里面时，通过 setViewportHint 告诉可见区域，主线程空闲时预先绑定后面的条目，
+     * 并调用 XBaseAdapter.onPrefetch 提前加载图片，滚动方向反过来时取消
+     */
+    public void setPrefetchCount(int count) {
+        mPrefetchCount = Math.max(count, 0);
+        if (mPrefetchCount == 0 && mPrefetcher != null) {
+            mPrefetcher.cancel();
+        }
+    }
+
+    public int getPrefetchCount() {
+        return mPrefetchCount;
+    }
+
+    /**
+     * 滚动的父布局告诉可见区域，坐标相对于这个布局，还没滚动到时可以在布局外面
+     * 可见的条目范围通过 XBaseAdapter.onViewportChanged 告诉适配器；
+     * 和上一次比较得到滚动方向，在滚动方向上预取 setPrefetchCount 个条目
+     */
+    public void setViewportHint(int visibleTop, int visibleBottom) {
+        if (mAdapter == null) {
+            return;
+        }
+        int itemCount = getPrefetchItemCount();
+        if (itemCount > 0) {
+            int first = Math.min(findPositionAt(visibleTop), itemCount - 1);
+            int last = Math.min(findPositionAt(visibleBottom), itemCount - 1);
+            mAdapter.onViewportChanged(first, Math.max(first, last));
+        }
+        if (mPrefetchCount == 0) {
+            return;
+        }
+        if (mPrefetcher == null) {
+            mPrefetcher = new ViewPrefetcher(this);
+        }
+        mPrefetcher.onViewportChanged(visibleTop, visibleBottom, mPrefetchCount);
+    }
+
+    /**
+     * 某个纵坐标所在的条目位置，用来确定预取的范围
+     * 默认按已经布局的子View查找，在所有子View下面返回子View的个数
+     */
+    protected int findPositionAt(int y) {
+        int childCount = getChildCount();
+        for (int i = 0; i < childCount; i++) {
+            if (getChildAt(i).getBottom() > y) {
+                return i;
+            }
+        }
+        return childCount;
+    }
+
+    /**
+     * 预先绑定某个位置的View，已经添加了的或者不需要预先绑定的返回null
+     * 只有按需添加子View的布局需要重写，比如虚拟化的流式布局
+     */
+    protected View onPrefetchView(int position) {
+        return null;
+    }
+
+    /**
+     * 取出预先绑定好的View，没有返回null
+     */
+    protected View takePrefetchedView(int position) {
+        return mPrefetcher == null ? null : mPrefetcher.take(position);
+    }
+
+    /**
+     * 可以预取的条目个数
+     */
+    int getPrefetchItemCount() {
+        return mAdapter == null ? 0 : getLayoutCount(mAdapter.getCount());
+    }
+
+    /**
+     * 适配器是否还有没分发的通知，这时子View的位置和数据对不上，测量之外的绑定要等分发之后再做
+     */
+    boolean hasPendingUpdates() {
+        return mAdapter != null && mAdapter.hasPendingUpdates();
+    }
+
+    /**
+     * 丢掉预取的结果，数据改变之后位置都不对了
+     */
+    void clearPrefetch() {
+        if (mPrefetcher != null) {
+            mPrefetcher.clear();
+        }
+    }
+
+    /**
+     * 设置子View全部添加完成的监听
+     */
+    public void setOnLayoutCompleteListener(OnLayoutCompleteListener listener) {
+        mLayoutCompleteListener = listener;
+    }
+
+    private void removeItemViews(int start, int count) {
+        for (int i = start + count - 1; i >= start; i--) {
+            View view = getChildAt(i);
+            removeViewAt(i);
+            recycleView(view);
+        }
+    }
+
+    /**
+     * 需要显示的子View个数
+     */
+    protected int getLayoutCount(int adapterCount) {
+        return adapterCount;
+    }
+
+    /**
+     * 条目的类型
+     */
+    protected int getItemViewType(int position) {
+        return mAdapter == null ? 0 : mAdapter.getItemViewType(position);
+    }
+
+    private void addItemView(View view, int index) {
+        view.setFocusable(true);
+        addView(view, index);
+    }
+
+    int getViewType(View view) {
+        Object viewType = view.getTag(R.id.xview_view_type);
+        return viewType instanceof Integer ? (Integer) viewType : -1;
+    }
+
+    /**
+     * 回收子View到缓存池
+     */
+    protected void recycleView(View view) {
+        mRecycledViewPool.putRecycledView(getViewType(view), view);
+    }
+
+    /**
+     * 设置缓存池，多个布局可以共用一个
+     */
+    public void setRecycledViewPool(RecycledViewPool pool) {
+        mRecycledViewPool = pool == null ? new RecycledViewPool() : pool;
+    }
+
+    public RecycledViewPool getRecycledViewPool() {
+        return mRecycledViewPool;
+    }
+
+    public XBaseAdapter getAdapter() {
+        return mAdapter;
+    }
+
 }
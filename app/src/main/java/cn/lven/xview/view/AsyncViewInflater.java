@@ -0,0 +1,169 @@
+package cn.lven.xview.view;
+
+import android.util.SparseArray;
+import android.view.View;
+
+import cn.lven.xview.R;
+import cn.lven.xview.adapter.XBaseAdapter;
+import cn.lven.xview.util.FrameScheduler;
+import cn.lven.xview.util.XExecutors;
+
+
+/**
+ * 在后台线程创建条目的View，回到主线程按顺序分帧添加
+ */
+
+class AsyncViewInflater {
+    private final AdapterLayout mLayout;
+    /**
+     * 创建好还没添加的View，key是位置
+     */
+    private final SparseArray<Result> mResults = new SparseArray<>();
+    // 后台线程也会读
+    private volatile int mGeneration;
+    private int mNextPosition;
+    private int mEndPosition;
+    private boolean isRunning;
+    private final FrameScheduler mScheduler;
+
+    AsyncViewInflater(AdapterLayout layout) {
+        mLayout = layout;
+        mScheduler = new FrameScheduler(new Runnable() {
+            @Override
+            public void run() {
+                drain();
+            }
+        });
+    }
+
+    /**
+     * 开始创建 [startPosition, endPosition) 的View
+     */
+    void start(final XBaseAdapter adapter, int startPosition, int endPosition) {
+        cancel();
+        mNextPosition = startPosition;
+        mEndPosition = endPosition;
+        isRunning = startPosition < endPosition;
+        final int generation = mGeneration;
+        for (int i = startPosition; i < endPosition; i++) {
+            final int position = i;
+            final int viewType = mLayout.getItemViewType(position);
+            XExecutors.background().execute(new Runnable() {
+                @Override
+                public void run() {
+                    if (generation != mGeneration) {
+                        return;
+                    }
+                    View view = null;
+                    long start = System.nanoTime();
+                    try {
+                        view = adapter.onCreateView(mLayout, viewType);
+                    } catch (Throwable e) {
+                        // 有些View只能在主线程创建，回到主线程再创建
+                    }
+                    final long duration = System.nanoTime() - start;
+                    final View result = view;
+                    XExecutors.mainHandler().post(new Runnable() {
+                        @Override
+                        public void run() {
+                            if (result != null) {
+                                mLayout.recordInflate(duration);
+                            }
+                            onInflated(adapter, generation, position, viewType, result);
+                        }
+                    });
+                }
+            });
+        }
+    }
+
+    /**
+     * @param adapter 创建这个View的适配器，换了适配器之后晚到的View不能放到新适配器的缓存池
+     */
+    private void onInflated(XBaseAdapter adapter, int generation, int position, int viewType, View view) {
+        if (view != null) {
+            view.setTag(R.id.xview_view_type, viewType);
+        }
+        if (generation != mGeneration) {
+            // 已经取消了，同一个适配器的View还可以放到缓存池
+            if (view != null && adapter == mLayout.getAdapter()) {
+                mLayout.recycleView(view);
+            }
+            return;
+        }
+        mResults.put(position, new Result(adapter, view));
+        if (position == mNextPosition) {
+            mScheduler.schedule();
+        }
+    }
+
+    /**
+     * 按顺序添加已经创建好的View，超过这一帧的时间就下一帧再添加
+     */
+    private void drain() {
+        if (mLayout.hasPendingUpdates()) {
+            // 数据已经改了，等通知分发之后重新开始
+            mScheduler.schedule();
+            return;
+        }
+        long budgetNanos = mLayout.getFrameBudgetNanos();
+        long start = System.nanoTime();
+        mLayout.blockLayoutRequests();
+        try {
+            while (isRunning && mNextPosition < mEndPosition) {
+                int index = mResults.indexOfKey(mNextPosition);
+                if (index < 0) {
+                    // 前面的还没创建好
+                    return;
+                }
+                Result result = mResults.valueAt(index);
+                mResults.removeAt(index);
+                mLayout.attachInflatedView(mNextPosition, result.mView);
+                mNextPosition++;
+                if (mNextPosition < mEndPosition && System.nanoTime() - start >= budgetNanos) {
+                    mScheduler.schedule();
+                    return;
+                }
+            }
+            if (isRunning && mNextPosition >= mEndPosition) {
+                isRunning = false;
+                mLayout.onAsyncInflateFinished();
+            }
+        } finally {
+            mLayout.unblockLayoutRequests();
+        }
+    }
+
+    /**
+     * 取消还没添加的View，已经创建好的放到缓存池
+     */
+    void cancel() {
+        mGeneration++;
+        mScheduler.cancel();
+        for (int i = 0; i < mResults.size(); i++) {
+            Result result = mResults.valueAt(i);
+            if (result.mView != null && result.mAdapter == mLayout.getAdapter()) {
+                mLayout.recycleView(result.mView);
+            }
+        }
+        mResults.clear();
+        isRunning = false;
+    }
+
+    boolean isRunning() {
+        return isRunning;
+    }
+
+    private static class Result {
+        final XBaseAdapter mAdapter;
+        /**
+         * 后台不能创建时为null，回到主线程再创建
+         */
+        final View mView;
+
+        Result(XBaseAdapter adapter, View view) {
+            mAdapter = adapter;
+            mView = view;
+        }
+    }
+}
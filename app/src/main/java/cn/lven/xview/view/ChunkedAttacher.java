@@ -0,0 +1,86 @@
+package cn.lven.xview.view;
+
+import cn.lven.xview.util.FrameScheduler;
+
+
+/**
+ * 分帧添加子View，每一帧只占用设置的时间，剩下的下一帧再添加
+ */
+
+class ChunkedAttacher {
+    private final AdapterLayout mLayout;
+    private final FrameScheduler mScheduler;
+    private int mNextPosition;
+    private int mEndPosition;
+    private int mOldCount;
+    private boolean isRunning;
+
+    ChunkedAttacher(AdapterLayout layout) {
+        mLayout = layout;
+        mScheduler = new FrameScheduler(new Runnable() {
+            @Override
+            public void run() {
+                attachBatch();
+            }
+        });
+    }
+
+    /**
+     * 开始分帧绑定和添加 [0, count) 的子View
+     *
+     * @param oldCount 已有的子View个数，这些只需要重新绑定
+     */
+    void start(int count, int oldCount) {
+        cancel();
+        mNextPosition = 0;
+        mEndPosition = count;
+        mOldCount = oldCount;
+        isRunning = true;
+        // 第一批在当前帧就添加
+        attachBatch();
+    }
+
+    private void attachBatch() {
+        if (!isRunning) {
+            return;
+        }
+        if (mLayout.hasPendingUpdates()) {
+            // 数据已经改了，等通知分发之后重新开始
+            mScheduler.schedule();
+            return;
+        }
+        long budgetNanos = mLayout.getFrameBudgetNanos();
+        long start = System.nanoTime();
+        mLayout.blockLayoutRequests();
+        try {
+            while (mNextPosition < mEndPosition) {
+                if (!mLayout.layoutPosition(mNextPosition, mOldCount, mEndPosition)) {
+                    // 后面的交给后台创建
+                    isRunning = false;
+                    return;
+                }
+                mNextPosition++;
+                if (System.nanoTime() - start >= budgetNanos) {
+                    break;
+                }
+            }
+            if (mNextPosition >= mEndPosition) {
+                isRunning = false;
+                mLayout.onChunkedAttachFinished(mEndPosition);
+            } else {
+                mScheduler.schedule();
+            }
+        } finally {
+            mLayout.unblockLayoutRequests();
+        }
+    }
+
+    void cancel() {
+        isRunning = false;
+        mScheduler.cancel();
+    }
+
+    boolean isRunning() {
+        return isRunning;
+    }
+}
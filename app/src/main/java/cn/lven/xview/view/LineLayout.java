@@ -6,6 +6,8 @@ import android.util.AttributeSet;
 import android.view.View;
 
 import cn.lven.xview.R;
+import cn.lven.xview.view.measure.LineMeasure;
+import cn.lven.xview.view.metrics.LayoutMetrics;
 
 
 /**
@@ -45,6 +47,12 @@ public class LineLayout extends AdapterLayout {
 
     @Override
     protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+        long start = beginPass(LayoutMetrics.STAGE_MEASURE);
+        measureLine(widthMeasureSpec, heightMeasureSpec);
+        endPass(LayoutMetrics.STAGE_MEASURE, start);
+    }
+
+    private void measureLine(int widthMeasureSpec, int heightMeasureSpec) {
         // 1.测量控件的宽高
         // 获取自已的测量模式
         int modeWidth = View.MeasureSpec.getMode(widthMeasureSpec);
@@ -56,17 +64,24 @@ public class LineLayout extends AdapterLayout {
         int count = getChildCount();
         int height = 0;
         int width = 0;
+        // 当前子View左边的位置
+        int left = 0;
+        boolean isFirst = true;
 
         for (int i = 0; i < count; i++) {
             View child = getChildAt(i);
+            // 和摆放一样跳过GONE的
+            if (child.getVisibility() == GONE) {
+                continue;
+            }
             measureChild(child, widthMeasureSpec, heightMeasureSpec);
             int measuredWidth = child.getMeasuredWidth();
-            // 计算控件的宽度
-            if (i == 0) {
-                width = measuredWidth;
-            } else {
-                width += (int) (mViewMarginRate * width + 0.5f);
+            // 计算控件的宽度，和摆放时的偏移一致
+            if (!isFirst) {
+                left += LineMeasure.offset(measuredWidth, mViewMarginRate);
             }
+            isFirst = false;
+            width = Math.max(width, left + measuredWidth);
             int measuredHeight = child.getMeasuredHeight();
             // 高度取最大的子View的高度
             height = Math.max(height, measuredHeight);
@@ -86,10 +101,16 @@ public class LineLayout extends AdapterLayout {
 
     @Override
     protected void onLayout(boolean changed, int l, int t, int r, int b) {
+        long start = beginPass(LayoutMetrics.STAGE_LAYOUT);
+        layoutLine();
+        endPass(LayoutMetrics.STAGE_LAYOUT, start);
+    }
 
+    private void layoutLine() {
         int count = getChildCount();
         int cl = getPaddingLeft();
         int ct = getPaddingTop();
+        boolean isFirst = true;
         // 摆放
         for (int i = 0; i < count; i++) {
             View child = getChildAt(i);
@@ -98,10 +119,11 @@ public class LineLayout extends AdapterLayout {
             }
             int width = child.getMeasuredWidth();
             int height = child.getMeasuredHeight();
-            if (i > 0) {
-                // 计算第二个后面子View左边的位置
-                cl += (int) (mViewMarginRate * width + 0.5f);
+            if (!isFirst) {
+                // 计算第二个显示的子View后面左边的位置
+                cl += LineMeasure.offset(width, mViewMarginRate);
             }
+            isFirst = false;
             // 摆放子View
             child.layout(cl, ct, cl + width, ct + height);
         }
@@ -0,0 +1,96 @@
+package cn.lven.xview.view;
+
+import android.util.SparseArray;
+import android.view.View;
+
+import java.util.ArrayList;
+
+
+/**
+ * 按类型缓存移除的子View，重新布局时复用，避免重复inflate
+ */
+
+public class RecycledViewPool {
+    /**
+     * 每种类型默认最多缓存的个数
+     */
+    public static final int DEFAULT_MAX_SCRAP = 10;
+
+    private SparseArray<ArrayList<View>> mScraps = new SparseArray<>();
+    private SparseArray<Integer> mMaxScraps = new SparseArray<>();
+    private int mDefaultMaxScrap = DEFAULT_MAX_SCRAP;
+
+    /**
+     * 取出一个缓存的View，没有就返回null
+     */
+    public View getRecycledView(int viewType) {
+        ArrayList<View> scrap = mScraps.get(viewType);
+        if (scrap == null || scrap.isEmpty()) {
+            return null;
+        }
+        // 从尾部取，不需要移动数组
+        return scrap.remove(scrap.size() - 1);
+    }
+
+    /**
+     * 缓存一个View，超过上限就淘汰最早放进来的
+     */
+    public void putRecycledView(int viewType, View view) {
+        int max = getMaxRecycledViews(viewType);
+        if (max <= 0 || view == null) {
+            return;
+        }
+        ArrayList<View> scrap = mScraps.get(viewType);
+        if (scrap == null) {
+            scrap = new ArrayList<>(max);
+            mScraps.put(viewType, scrap);
+        }
+        if (scrap.contains(view)) {
+            return;
+        }
+        if (scrap.size() >= max) {
+            scrap.remove(0);
+        }
+        scrap.add(view);
+    }
+
+    /**
+     * 设置某种类型最多缓存的个数
+     */
+    public void setMaxRecycledViews(int viewType, int max) {
+        mMaxScraps.put(viewType, max);
+        ArrayList<View> scrap = mScraps.get(viewType);
+        if (scrap != null) {
+            while (scrap.size() > Math.max(max, 0)) {
+                scrap.remove(0);
+            }
+        }
+    }
+
+    /**
+     * 设置所有类型默认最多缓存的个数
+     */
+    public void setDefaultMaxRecycledViews(int max) {
+        mDefaultMaxScrap = max;
+    }
+
+    public int getMaxRecycledViews(int viewType) {
+        Integer max = mMaxScraps.get(viewType);
+        return max == null ? mDefaultMaxScrap : max;
+    }
+
+    /**
+     * 某种类型缓存的个数
+     */
+    public int getRecycledViewCount(int viewType) {
+        ArrayList<View> scrap = mScraps.get(viewType);
+        return scrap == null ? 0 : scrap.size();
+    }
+
+    /**
+     * 清空缓存
+     */
+    public void clear() {
+        mScraps.clear();
+    }
+}
@@ -0,0 +1,184 @@
+package cn.lven.xview.view;
+
+import android.os.Looper;
+import android.os.MessageQueue;
+import android.util.SparseArray;
+import android.util.SparseBooleanArray;
+import android.view.View;
+
+import cn.lven.xview.adapter.XBaseAdapter;
+
+
+/**
+ * 按滚动方向预取可见区域后面的条目：主线程空闲时预先绑定View、调用适配器的 onPrefetch 提前加载图片
+ * 滚动方向反过来时取消还没用到的
+ */
+
+class ViewPrefetcher implements MessageQueue.IdleHandler {
+    private static final int DIRECTION_DOWN = 1;
+    private static final int DIRECTION_UP = -1;
+
+    private final AdapterLayout mLayout;
+    /**
+     * 预先绑定好的View，key是条目的位置
+     */
+    private final SparseArray<View> mViews = new SparseArray<>();
+    /**
+     * 已经调用过 onPrefetch 的位置
+     */
+    private final SparseBooleanArray mPrefetched = new SparseBooleanArray();
+    private boolean hasViewport;
+    private int mLastTop;
+    private int mDirection = DIRECTION_DOWN;
+    private int mNextPosition;
+    private int mRemaining;
+    private boolean isIdleScheduled;
+
+    ViewPrefetcher(AdapterLayout layout) {
+        mLayout = layout;
+    }
+
+    /**
+     * 可见区域改变，第一次默认向下
+     *
+     * @param count 预取的条目个数
+     */
+    void onViewportChanged(int visibleTop, int visibleBottom, int count) {
+        int direction = mDirection;
+        if (hasViewport && visibleTop != mLastTop) {
+            direction = visibleTop > mLastTop ? DIRECTION_DOWN : DIRECTION_UP;
+        } else if (hasViewport) {
+            return;
+        }
+        if (direction != mDirection) {
+            // 反方向了，之前预取的用不上
+            cancel();
+            mDirection = direction;
+        }
+        hasViewport = true;
+        mLastTop = visibleTop;
+        int itemCount = mLayout.getPrefetchItemCount();
+        if (itemCount <= 0) {
+            return;
+        }
+        int start;
+        if (direction == DIRECTION_DOWN) {
+            start = mLayout.findPositionAt(visibleBottom);
+        } else {
+            start = mLayout.findPositionAt(visibleTop);
+        }
+        start = Math.max(0, Math.min(start, itemCount - 1));
+        int end = direction == DIRECTION_DOWN ? Math.min(start + count, itemCount) : Math.max(start - count, -1);
+        // 已经滚过去的不再保留
+        for (int i = mViews.size() - 1; i >= 0; i--) {
+            if (!isInRange(mViews.keyAt(i), start, end)) {
+                View view = mViews.valueAt(i);
+                mViews.removeAt(i);
+                mLayout.recycleView(view);
+            }
+        }
+        for (int i = mPrefetched.size() - 1; i >= 0; i--) {
+            if (!isInRange(mPrefetched.keyAt(i), start, end)) {
+                mPrefetched.removeAt(i);
+            }
+        }
+        mNextPosition = start;
+        mRemaining = Math.abs(end - start);
+        scheduleIdle();
+    }
+
+    private boolean isInRange(int position, int start, int end) {
+        return mDirection == DIRECTION_DOWN ? position >= start && position < end
+                : position <= start && position > end;
+    }
+
+    private void scheduleIdle() {
+        if (mRemaining > 0 && !isIdleScheduled) {
+            isIdleScheduled = true;
+            Looper.myQueue().addIdleHandler(this);
+        }
+    }
+
+    /**
+     * 主线程空闲时预取，每次只占用一帧的时间
+     */
+    @Override
+    public boolean queueIdle() {
+        XBaseAdapter adapter = mLayout.getAdapter();
+        if (adapter == null || mLayout.hasPendingUpdates()) {
+            // 数据已经改了，通知还没分发到布局，位置都不对；分发的时候会清掉预取
+            mRemaining = 0;
+        }
+        long budgetNanos = mLayout.getFrameBudgetNanos();
+        long start = System.nanoTime();
+        while (mRemaining > 0) {
+            int position = mNextPosition;
+            mNextPosition += mDirection;
+            mRemaining--;
+            prefetch(adapter, position);
+            if (System.nanoTime() - start >= budgetNanos) {
+                break;
+            }
+        }
+        isIdleScheduled = mRemaining > 0;
+        return isIdleScheduled;
+    }
+
+    private void prefetch(XBaseAdapter adapter, int position) {
+        if (position < 0 || position >= adapter.getCount()) {
+            return;
+        }
+        if (!mPrefetched.get(position)) {
+            mPrefetched.put(position, true);
+            adapter.onPrefetch(position);
+        }
+        if (mViews.get(position) == null) {
+            View view = mLayout.onPrefetchView(position);
+            if (view != null) {
+                mViews.put(position, view);
+            }
+        }
+    }
+
+    /**
+     * 取出预先绑定的View，没有返回null
+     */
+    View take(int position) {
+        View view = mViews.get(position);
+        if (view != null) {
+            mViews.remove(position);
+        }
+        return view;
+    }
+
+    /**
+     * 取消还没用到的预取，通知适配器停止加载
+     */
+    void cancel() {
+        XBaseAdapter adapter = mLayout.getAdapter();
+        if (adapter != null) {
+            for (int i = 0; i < mPrefetched.size(); i++) {
+                adapter.onCancelPrefetch(mPrefetched.keyAt(i));
+            }
+        }
+        clear();
+    }
+
+    /**
+     * 数据改变之后位置都不对了，直接丢掉
+     */
+    void clear() {
+        if (isIdleScheduled) {
+            isIdleScheduled = false;
+            Looper.myQueue().removeIdleHandler(this);
+        }
+        mRemaining = 0;
+        // 下一次可见区域没变也重新预取
+        hasViewport = false;
+        mPrefetched.clear();
+        for (int i = 0; i < mViews.size(); i++) {
+            mLayout.recycleView(mViews.valueAt(i));
+        }
+        mViews.clear();
+    }
+}
@@ -1,25 +1,25 @@
 package cn.lven.xview.view;
 
 import android.content.Context;
-import android.database.DataSetObserver;
+import android.graphics.Rect;
 import android.util.AttributeSet;
+import android.util.SparseArray;
 import android.view.View;
-import android.view.ViewGroup;
+import android.view.ViewTreeObserver;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.HashMap;
 
 import cn.lven.xview.adapter.XBaseAdapter;
+import cn.lven.xview.view.measure.FlowLines;
+import cn.lven.xview.view.measure.MeasureCache;
+import cn.lven.xview.view.metrics.LayoutMetrics;
 
 
 /**
  * 流式布局
  */
 
-public class XFlowLayout extends ViewGroup {
-    private XBaseAdapter mAdapter;
-    private DataSetObserver mObserver;
-    private boolean isRegister = false;
+public class XFlowLayout extends AdapterLayout {
 
     public XFlowLayout(Context context) {
         this(context, null);
@@ -34,10 +34,8 @@ public class XFlowLayout extends ViewGroup {
     }
 
 
-    // 记录每行的View
-    private List<List<View>> mViews = new ArrayList<>();
-    // 记录每行的高度
-    private List<Integer> mHeights = new ArrayList<>();
+    // 换行的结果
+    private FlowLines mLines = new FlowLines();
     /**
      * 是否平分
      */
@@ -45,10 +43,50 @@ public class XFlowLayout extends ViewGroup {
 
     private boolean isShowOneLine;
 
+    // 上一次测量的子View，用来判断要不要重新测量
+    private View[] mCachedChildren = new View[0];
+    private int mCachedCount;
+    private int mLastWidthMeasureSpec;
+    private int mLastHeightMeasureSpec;
+
+    // 测量统计
+    private int mMeasurePassCount;
+    private int mMeasureChildCount;
+    /**
+     * 按条目内容缓存的测量结果，适配器实现了 getMeasureKey 才会使用
+     */
+    private MeasureCache mMeasureCache = new MeasureCache();
+    private int[] mCachedSize = new int[4];
+
+    /**
+     * 虚拟化：只创建可见的行
+     */
+    private boolean isVirtualized;
+    // 虚拟化时已经添加的子View，key是条目的位置
+    private SparseArray<View> mAttachedViews = new SparseArray<>();
+    private int[] mEstimateSize = new int[2];
+    private Rect mVisibleRect = new Rect();
+    private ViewTreeObserver.OnScrollChangedListener mScrollChangedListener =
+            new ViewTreeObserver.OnScrollChangedListener() {
+                @Override
+                public void onScrollChanged() {
+                    // 还有没分发的通知时行和数据对不上，等分发之后重新布局再添加
+                    if (isVirtualized && getWidth() > 0 && !hasPendingUpdates()) {
+                        fillViewport();
+                    }
+                }
+            };
+
     @Override
     protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
-        mViews.clear();
-        mHeights.clear();
+        long start = beginPass(LayoutMetrics.STAGE_MEASURE);
+        measureLines(widthMeasureSpec, heightMeasureSpec);
+        endPass(LayoutMetrics.STAGE_MEASURE, start);
+    }
+
+    private void measureLines(int widthMeasureSpec, int heightMeasureSpec) {
+        mMeasurePassCount++;
+        mMeasureCache.beginPass();
         // 1.测量控件的宽高
         // 获取自已的测量模式
         int modeWidth = MeasureSpec.getMode(widthMeasureSpec);
@@ -57,101 +95,274 @@ public class XFlowLayout extends ViewGroup {
         int sizeWidth = MeasureSpec.getSize(widthMeasureSpec);
         int sizeHeight = MeasureSpec.getSize(heightMeasureSpec);
 
+        boolean specChanged = widthMeasureSpec != mLastWidthMeasureSpec
+                || heightMeasureSpec != mLastHeightMeasureSpec;
+        mLastWidthMeasureSpec = widthMeasureSpec;
+        mLastHeightMeasureSpec = heightMeasureSpec;
+
+        mLines.setAvailableWidth(sizeWidth - getPaddingLeft() - getPaddingRight());
+        if (isVirtualized) {
+            measureItems(widthMeasureSpec, heightMeasureSpec, specChanged);
+        } else {
+            measureAllChildren(widthMeasureSpec, heightMeasureSpec, specChanged);
+        }
+        // 只从改变的子View所在的行开始重新换行
+        mLines.compute();
+
         // 最后要设置的宽高
-        int width = 0;
-        int height = 0;
-        // 行的宽高
-        int lineWidth = 0;
-        int lineHeight = 0;
+        int lineLimit = isShowOneLine ? 1 : mLines.getLineCount();
+        int width = mLines.getMaxWidth(lineLimit) + getPaddingLeft() + getPaddingRight();
+        int height = mLines.getTotalHeight(lineLimit) + getPaddingTop() + getPaddingBottom();
+
+        // 2.设置控件的宽高
+        setMeasuredDimension
+                (
+                        modeWidth == MeasureSpec.EXACTLY ? sizeWidth : width,
+                        modeHeight == MeasureSpec.EXACTLY ? sizeHeight : height
+                );
+    }
 
+    /**
+     * 测量所有的子View
+     */
+    private void measureAllChildren(int widthMeasureSpec, int heightMeasureSpec, boolean specChanged) {
         int count = getChildCount();
-        List<View> lineViews = new ArrayList<>();
+        ensureChildCapacity(count);
+        mLines.setItemCount(count);
         for (int i = 0; i < count; i++) {
             View child = getChildAt(i);
-            if (child.getVisibility() == View.GONE) {
+            if (child.getVisibility() != View.GONE) {
+                boolean cached = i < mCachedCount && mCachedChildren[i] == child;
+                // 参数没变、子View也没有请求重新布局，上一次的测量结果还是对的
+                if (specChanged || !cached || child.isLayoutRequested()) {
+                    measureItem(child, i, widthMeasureSpec, heightMeasureSpec);
+                }
+            }
+            setItemSize(i, child);
+            mCachedChildren[i] = child;
+        }
+        for (int i = count; i < mCachedCount; i++) {
+            mCachedChildren[i] = null;
+        }
+        mCachedCount = count;
+    }
+
+    /**
+     * 虚拟化时测量：已经添加的子View直接测量，其他的条目先估算，不能估算的绑定一个View测量之后回收
+     */
+    private void measureItems(int widthMeasureSpec, int heightMeasureSpec, boolean specChanged) {
+        int count = mAdapter == null ? 0 : mAdapter.getCount();
+        mLines.setItemCount(count);
+        for (int i = 0; i < mAttachedViews.size(); i++) {
+            int position = mAttachedViews.keyAt(i);
+            View child = mAttachedViews.valueAt(i);
+            if (specChanged || child.isLayoutRequested()) {
+                measureItem(child, position, widthMeasureSpec, heightMeasureSpec);
+            }
+            setItemSize(position, child);
+        }
+        for (int position = 0; position < count; position++) {
+            if (mLines.isItemSizeKnown(position)) {
                 continue;
             }
-            // 测量子View
-            measureChild(child, widthMeasureSpec, heightMeasureSpec);
-            MarginLayoutParams lp = (MarginLayoutParams) child.getLayoutParams();
-            // 子View占据的宽度
-            int childWidth = child.getMeasuredWidth() + lp.leftMargin + lp.rightMargin;
-            // 子View占据的高度
-            int childHeight = child.getMeasuredHeight() + lp.topMargin + lp.bottomMargin;
-            // 如果行宽 + 子View的宽度 > 测量的宽度
-            if (lineWidth + childWidth > sizeWidth - getPaddingLeft() - getPaddingRight()) {
-                // 如果只显示一行
-                if (isShowOneLine && mViews.size() > 0) {
-                    continue;
-                }
-                // 换行
-                // 取最宽
-                width = Math.max(width, lineWidth);
-                height += lineHeight;
-
-                // 添加到第行的记录
-                mViews.add(lineViews);
-                mHeights.add(lineHeight);
-
-                // 记录重置（换行后可能就是下一行的宽高）
-                lineWidth = childWidth;
-                lineHeight = childHeight;
-                lineViews = new ArrayList<>();
-                lineViews.add(child);
-            } else {
-                // 叠加宽度
-                lineWidth += childWidth;
-                // 取高度的最大值
-                lineHeight = Math.max(childHeight, lineHeight);
-                // 添加到行的View里面
-                lineViews.add(child);
+            if (mAdapter.estimateItemSize(position, mEstimateSize)) {
+                mLines.setItemSize(position, mEstimateSize[0], mEstimateSize[1]);
+                continue;
             }
-            // 最后一个：取巧了
-            if (i == count - 1) {
-                if (isShowOneLine && mViews.size() > 0) {
-                    continue;
-                }
-                // 取最宽
-                width = Math.max(width, lineWidth);
-                height += lineHeight;
-                mViews.add(lineViews);
-                mHeights.add(lineHeight);
+            Object measureKey = getMeasureKey(position);
+            if (measureKey != null
+                    && mMeasureCache.get(measureKey, widthMeasureSpec, heightMeasureSpec, mCachedSize)) {
+                // 内容一样的测量过，不用绑定View
+                mLines.setItemSize(position, mCachedSize[0] + mCachedSize[2], mCachedSize[1] + mCachedSize[3]);
+                continue;
+            }
+            View view = obtainView(position);
+            if (view.getLayoutParams() == null) {
+                view.setLayoutParams(generateDefaultLayoutParams());
             }
+            measureChild(view, widthMeasureSpec, heightMeasureSpec);
+            mMeasureChildCount++;
+            putMeasureCache(measureKey, view, widthMeasureSpec, heightMeasureSpec);
+            setItemSize(position, view);
+            recycleView(view);
         }
-        width += getPaddingLeft() + getPaddingRight();
-        height += getPaddingTop() + getPaddingBottom();
+    }
 
-        // 2.设置控件的宽高
-        setMeasuredDimension
-                (
-                        modeWidth == MeasureSpec.EXACTLY ? sizeWidth : width,
-                        modeHeight == MeasureSpec.EXACTLY ? sizeHeight : height
-                );
+    /**
+     * 测量条目的View，内容一样的测量过就按缓存的宽高精确测量，不用重新测量内容（比如文字）
+     */
+    private void measureItem(View child, int position, int widthMeasureSpec, int heightMeasureSpec) {
+        Object measureKey = getMeasureKey(position);
+        if (measureKey != null
+                && mMeasureCache.get(measureKey, widthMeasureSpec, heightMeasureSpec, mCachedSize)) {
+            measureChildExactly(child,
+                    MeasureSpec.makeMeasureSpec(mCachedSize[0], MeasureSpec.EXACTLY),
+                    MeasureSpec.makeMeasureSpec(mCachedSize[1], MeasureSpec.EXACTLY));
+            return;
+        }
+        measureChild(child, widthMeasureSpec, heightMeasureSpec);
+        mMeasureChildCount++;
+        putMeasureCache(measureKey, child, widthMeasureSpec, heightMeasureSpec);
     }
 
+    private Object getMeasureKey(int position) {
+        if (mAdapter == null || mMeasureCache.getMaxSize() == 0 || position >= mAdapter.getCount()) {
+            return null;
+        }
+        return mAdapter.getMeasureKey(position);
+    }
+
+    private void putMeasureCache(Object measureKey, View child, int widthMeasureSpec, int heightMeasureSpec) {
+        if (measureKey == null) {
+            return;
+        }
+        MarginLayoutParams lp = (MarginLayoutParams) child.getLayoutParams();
+        mMeasureCache.put(measureKey, widthMeasureSpec, heightMeasureSpec,
+                child.getMeasuredWidth(), child.getMeasuredHeight(),
+                lp.leftMargin + lp.rightMargin, lp.topMargin + lp.bottomMargin);
+    }
+
+    /**
+     * 记录子View占据的宽高
+     */
+    private void setItemSize(int position, View child) {
+        if (child.getVisibility() == View.GONE) {
+            mLines.setItemSize(position, -1, -1);
+            return;
+        }
+        MarginLayoutParams lp = (MarginLayoutParams) child.getLayoutParams();
+        mLines.setItemSize(position,
+                child.getMeasuredWidth() + lp.leftMargin + lp.rightMargin,
+                child.getMeasuredHeight() + lp.topMargin + lp.bottomMargin);
+    }
+
+    private void ensureChildCapacity(int count) {
+        if (mCachedChildren.length >= count) {
+            return;
+        }
+        View[] children = new View[Math.max(count, mCachedChildren.length * 2)];
+        System.arraycopy(mCachedChildren, 0, children, 0, mCachedCount);
+        mCachedChildren = children;
+    }
+
+    /**
+     * 测量的次数
+     */
+    public int getMeasurePassCount() {
+        return mMeasurePassCount;
+    }
+
+    /**
+     * 不需要重新换行的测量次数
+     */
+    public int getLineCacheHitCount() {
+        return mLines.getCacheHitCount();
+    }
+
+    /**
+     * 重新换行的次数
+     */
+    public int getRewrapCount() {
+        return mLines.getRewrapCount();
+    }
+
+    /**
+     * 重新换行时处理过的子View个数
+     */
+    public int getRewrapChildCount() {
+        return mLines.getRewrapItemCount();
+    }
+
+    /**
+     * 调用measureChild的次数
+     */
+    public int getMeasureChildCount() {
+        return mMeasureChildCount;
+    }
+
+    /**
+     * 最近一次测量中测量缓存命中的个数
+     */
+    public int getMeasureCacheHitCount() {
+        return mMeasureCache.getPassHitCount();
+    }
+
+    /**
+     * 最近一次测量中测量缓存没命中的个数
+     */
+    public int getMeasureCacheMissCount() {
+        return mMeasureCache.getPassMissCount();
+    }
+
+    /**
+     * 清空测量统计
+     */
+    public void resetMeasureStats() {
+        mMeasurePassCount = 0;
+        mMeasureChildCount = 0;
+        mLines.resetStats();
+        mMeasureCache.resetStats();
+    }
+
+    /**
+     * 设置按条目内容缓存的测量结果最多个数，0不缓存，默认512
+     * 适配器实现 XBaseAdapter.getMeasureKey 之后，内容一样的条目不再重新测量
+     */
+    public void setMeasureCacheSize(int size) {
+        mMeasureCache.setMaxSize(size);
+    }
+
+    /**
+     * 测量缓存，条目的样式改变时要 clear
+     */
+    public MeasureCache getMeasureCache() {
+        return mMeasureCache;
+    }
+
+    @Override
+    public void setAdapter(XBaseAdapter adapter) {
+        if (adapter != mAdapter) {
+            // 不同适配器的Key意义不一样
+            mMeasureCache.clear();
+            // 之前适配器的View会被全部移除，不能回收到新适配器的缓存池，也不能按ID找回
+            mAttachedViews.clear();
+        }
+        super.setAdapter(adapter);
+    }
 
     @Override
     protected void onLayout(boolean changed, int l, int t, int r, int b) {
-        int lineNum = mHeights.size();
+        long start = beginPass(LayoutMetrics.STAGE_LAYOUT);
+        if (isVirtualized) {
+            fillViewport();
+        } else {
+            layoutLines();
+        }
+        endPass(LayoutMetrics.STAGE_LAYOUT, start);
+    }
+
+    private void layoutLines() {
+        int lineNum = mLines.getLineCount();
         // 子View的起始位置
         int left = getPaddingLeft();
         int top = getPaddingTop();
         // 控件的宽
         int measuredWidth = getMeasuredWidth();
         if (isShowOneLine) {
-            lineNum = 1;
+            lineNum = Math.min(1, lineNum);
         }
-        for (int i = 0; i < lineNum && mViews.size() > 0; i++) {
-            List<View> views = mViews.get(i);
+        int childCount = getChildCount();
+        for (int i = 0; i < lineNum; i++) {
+            int lineItemCount = mLines.getLineItemCount(i);
             // 行宽
             int lineMargin = 0;
             // 如果平分
-            if (isSquare && views.size() > 1) {
-                int lineWidth = getLineWidth(views);
-                lineMargin = (measuredWidth - lineWidth) / (views.size() - 1);
+            if (isSquare && lineItemCount > 1) {
+                lineMargin = (measuredWidth - mLines.getLineWidth(i)) / (lineItemCount - 1);
             }
-            Integer lineHeight = mHeights.get(i);
-            for (View view : views) {
+            int end = Math.min(mLines.getLineEnd(i), childCount);
+            for (int j = mLines.getLineStart(i); j < end; j++) {
+                View view = getChildAt(j);
                 if (view.getVisibility() == View.GONE) {
                     continue;
                 }
@@ -166,84 +377,309 @@ public class XFlowLayout extends ViewGroup {
             }
             // 下一行的宽度和高度
             left = getPaddingLeft();
-            top += lineHeight;
+            top += mLines.getLineHeight(i);
         }
     }
 
-    private int getLineWidth(List<View> views) {
-        int width = 0;
-        for (View view : views) {
-            MarginLayoutParams lp = (MarginLayoutParams) view.getLayoutParams();
-            width += lp.leftMargin + view.getMeasuredWidth() + lp.rightMargin;
+    /**
+     * 虚拟化时只添加可见区域上下各半屏范围内的行，其他的回收
+     */
+    private void fillViewport() {
+        int lineNum = isShowOneLine ? Math.min(1, mLines.getLineCount()) : mLines.getLineCount();
+        if (lineNum == 0 || !getLocalVisibleRect(mVisibleRect)) {
+            recycleAttachedViews();
+            return;
+        }
+        int extra = mVisibleRect.height() / 2;
+        int firstLine = mLines.findLineAt(mVisibleRect.top - extra - getPaddingTop());
+        int lastLine = Math.min(mLines.findLineAt(mVisibleRect.bottom + extra - getPaddingTop()), lineNum - 1);
+        // 添加的范围之外再按滚动方向预取
+        setViewportHint(mVisibleRect.top - extra, mVisibleRect.bottom + extra);
+        int firstPosition = mLines.getLineStart(firstLine);
+        int endPosition = mLines.getLineEnd(lastLine);
+        // 回收不可见的
+        for (int i = mAttachedViews.size() - 1; i >= 0; i--) {
+            int position = mAttachedViews.keyAt(i);
+            if (position < firstPosition || position >= endPosition) {
+                View view = mAttachedViews.valueAt(i);
+                mAttachedViews.removeAt(i);
+                removeViewInLayout(view);
+                recycleView(view);
+            }
+        }
+        int measuredWidth = getMeasuredWidth();
+        boolean sizeChanged = false;
+        for (int line = firstLine; line <= lastLine; line++) {
+            int lineItemCount = mLines.getLineItemCount(line);
+            int lineMargin = 0;
+            // 如果平分
+            if (isSquare && lineItemCount > 1) {
+                lineMargin = (measuredWidth - mLines.getLineWidth(line)) / (lineItemCount - 1);
+            }
+            int left = getPaddingLeft();
+            int top = getPaddingTop() + mLines.getLineTop(line);
+            int end = mLines.getLineEnd(line);
+            for (int position = mLines.getLineStart(line); position < end; position++) {
+                int itemWidth = mLines.getItemWidth(position);
+                if (itemWidth < 0) {
+                    continue;
+                }
+                View view = mAttachedViews.get(position);
+                if (view == null) {
+                    // 空闲时已经绑定和测量过的直接用
+                    view = takePrefetchedView(position);
+                    if (view == null) {
+                        view = obtainView(position);
+                    }
+                    LayoutParams params = view.getLayoutParams();
+                    if (params == null) {
+                        params = generateDefaultLayoutParams();
+                    }
+                    addViewInLayout(view, -1, params, true);
+                    mAttachedViews.put(position, view);
+                    measureItem(view, position, mLastWidthMeasureSpec, mLastHeightMeasureSpec);
+                    MarginLayoutParams lp = (MarginLayoutParams) view.getLayoutParams();
+                    if (view.getMeasuredWidth() + lp.leftMargin + lp.rightMargin != itemWidth
+                            || view.getMeasuredHeight() + lp.topMargin + lp.bottomMargin
+                            != mLines.getItemHeight(position)) {
+                        // 估算的尺寸不对，下次测量重新换行
+                        sizeChanged = true;
+                    }
+                }
+                MarginLayoutParams lp = (MarginLayoutParams) view.getLayoutParams();
+                int lc = left + lp.leftMargin;
+                int tc = top + lp.topMargin;
+                view.layout(lc, tc, lc + view.getMeasuredWidth(), tc + view.getMeasuredHeight());
+                left += itemWidth + lineMargin;
+            }
+        }
+        if (sizeChanged) {
+            requestLayout();
         }
-        return width;
     }
 
     @Override
-    public LayoutParams generateLayoutParams(AttributeSet attrs) {
-        return new MarginLayoutParams(getContext(), attrs);
+    protected int findPositionAt(int y) {
+        if (!isVirtualized) {
+            return super.findPositionAt(y);
+        }
+        int lineNum = mLines.getLineCount();
+        if (lineNum == 0) {
+            return 0;
+        }
+        int line = mLines.findLineAt(y - getPaddingTop());
+        if (line == lineNum - 1 && y - getPaddingTop() >= mLines.getTotalHeight(lineNum)) {
+            return mLines.getItemCount();
+        }
+        return mLines.getLineStart(line);
     }
 
-    public void setAdapter(XBaseAdapter adapter) {
-        // 移除监听
-        unRegisterAdapter();
-        if (adapter == null) {
-            throw new NullPointerException("FlowBaseAdapter is null");
-        }
-        mAdapter = adapter;
-        mObserver = new DataSetObserver() {
-            @Override
-            public void onChanged() {
-                resetLayout();
-            }
-        };
-        // 注册监听
-        registerAdapter();
-        // 添加布局
-        resetLayout();
+    @Override
+    protected View onPrefetchView(int position) {
+        if (!isVirtualized || position >= mLines.getItemCount() || position >= mAdapter.getCount()
+                || mAttachedViews.get(position) != null || mLines.getItemWidth(position) < 0) {
+            return null;
+        }
+        View view = obtainView(position);
+        if (view.getLayoutParams() == null) {
+            view.setLayoutParams(generateDefaultLayoutParams());
+        }
+        measureItem(view, position, mLastWidthMeasureSpec, mLastHeightMeasureSpec);
+        return view;
+    }
+
+    private void recycleAttachedViews() {
+        for (int i = mAttachedViews.size() - 1; i >= 0; i--) {
+            View view = mAttachedViews.valueAt(i);
+            removeViewInLayout(view);
+            recycleView(view);
+        }
+        mAttachedViews.clear();
     }
 
     /**
-     * 重新添加布局
+     * 数据改变之后处理已经添加的子View：ID稳定时按ID移到新的位置重新绑定，其他的回收
      */
-    private void resetLayout() {
-        if (mAdapter == null) {
+    private void reconcileAttachedViews() {
+        if (!mAdapter.hasStableIds()) {
+            recycleAttachedViews();
             return;
         }
-        removeAllViews();
+        HashMap<Long, View> views = new HashMap<>(mAttachedViews.size() * 2);
+        for (int i = 0; i < mAttachedViews.size(); i++) {
+            View view = mAttachedViews.valueAt(i);
+            long id = getViewItemId(view);
+            if (id == XBaseAdapter.NO_ID || views.containsKey(id)) {
+                removeViewInLayout(view);
+                recycleView(view);
+            } else {
+                views.put(id, view);
+            }
+        }
+        mAttachedViews.clear();
         int count = mAdapter.getCount();
-        for (int i = 0; i < count; i++) {
-            View view = mAdapter.getView(i, this);
-            addView(view);
+        for (int position = 0; position < count && !views.isEmpty(); position++) {
+            View view = views.remove(mAdapter.getItemId(position));
+            if (view == null) {
+                continue;
+            }
+            View bound = null;
+            if (getViewType(view) == getItemViewType(position)) {
+                bound = getAdapterView(position, view);
+            }
+            if (bound == view) {
+                setItemTags(view, position);
+                mAttachedViews.put(position, view);
+            } else {
+                // 类型变了或者适配器没有复用，交给fillViewport重新添加
+                removeViewInLayout(view);
+                recycleView(view);
+                if (bound != null) {
+                    setItemTags(bound, position);
+                    recycleView(bound);
+                }
+            }
+        }
+        // ID不在了
+        for (View view : views.values()) {
+            removeViewInLayout(view);
+            recycleView(view);
         }
     }
 
     @Override
-    protected void onDetachedFromWindow() {
-        unRegisterAdapter();
-        super.onDetachedFromWindow();
+    protected void resetLayout() {
+        if (!isVirtualized) {
+            super.resetLayout();
+            return;
+        }
+        if (mAdapter == null) {
+            return;
+        }
+        long start = beginPass(LayoutMetrics.STAGE_RESET);
+        // 数据全部改变，尺寸都要重新获取
+        mLines.setItemCount(0);
+        mLines.setItemCount(mAdapter.getCount());
+        reconcileAttachedViews();
+        endPass(LayoutMetrics.STAGE_RESET, start);
+        requestLayout();
+        invalidate();
+    }
+
+    @Override
+    protected void onItemRangeInserted(int positionStart, int itemCount) {
+        if (!isVirtualized) {
+            super.onItemRangeInserted(positionStart, itemCount);
+            return;
+        }
+        mLines.insertItems(positionStart, itemCount);
+        reconcileAttachedViews();
+        requestLayout();
     }
 
-    private void unRegisterAdapter() {
-        // 移除监听
-        if (mAdapter != null && mObserver != null && isRegister) {
-            isRegister = false;
-            mAdapter.unregisterDataSetObserver(mObserver);
+    @Override
+    protected void onItemRangeRemoved(int positionStart, int itemCount) {
+        if (!isVirtualized) {
+            super.onItemRangeRemoved(positionStart, itemCount);
+            return;
+        }
+        mLines.removeItems(positionStart, itemCount);
+        reconcileAttachedViews();
+        requestLayout();
+    }
+
+    @Override
+    protected void onItemRangeChanged(int positionStart, int itemCount) {
+        if (!isVirtualized) {
+            super.onItemRangeChanged(positionStart, itemCount);
+            return;
         }
+        int end = Math.min(positionStart + itemCount, mLines.getItemCount());
+        for (int position = positionStart; position < end; position++) {
+            mLines.invalidateItemSize(position);
+            View view = mAttachedViews.get(position);
+            if (view != null) {
+                mAttachedViews.remove(position);
+                removeViewInLayout(view);
+                recycleView(view);
+            }
+        }
+        requestLayout();
+    }
+
+    @Override
+    protected void onItemMoved(int fromPosition, int toPosition) {
+        if (!isVirtualized) {
+            super.onItemMoved(fromPosition, toPosition);
+            return;
+        }
+        mLines.removeItems(fromPosition, 1);
+        mLines.insertItems(toPosition, 1);
+        reconcileAttachedViews();
+        requestLayout();
+    }
+
+    /**
+     * 设置是否虚拟化：只创建可见区域附近的行，滚动的时候回收复用
+     * 放在ScrollView里面数据很多时使用，条目的尺寸可以通过 XBaseAdapter.estimateItemSize 估算
+     */
+    public void setVirtualized(boolean virtualized) {
+        if (isVirtualized == virtualized) {
+            return;
+        }
+        isVirtualized = virtualized;
+        // 两种模式的条目位置意义不一样，全部重来
+        clearPrefetch();
+        recycleAttachedViews();
+        removeAllViews();
+        mCachedCount = 0;
+        mLines.setItemCount(0);
+        if (getWindowToken() != null) {
+            if (virtualized) {
+                getViewTreeObserver().addOnScrollChangedListener(mScrollChangedListener);
+            } else {
+                getViewTreeObserver().removeOnScrollChangedListener(mScrollChangedListener);
+            }
+        }
+        resetLayout();
+    }
+
+    public boolean isVirtualized() {
+        return isVirtualized;
     }
 
     @Override
     protected void onAttachedToWindow() {
         super.onAttachedToWindow();
-        registerAdapter();
+        if (isVirtualized) {
+            getViewTreeObserver().addOnScrollChangedListener(mScrollChangedListener);
+        }
     }
 
-    private void registerAdapter() {
-        // 添加监听
-        if (mAdapter != null && mObserver != null && !isRegister) {
-            mAdapter.registerDataSetObserver(mObserver);
-            isRegister = true;
-        }
+    @Override
+    protected void onDetachedFromWindow() {
+        getViewTreeObserver().removeOnScrollChangedListener(mScrollChangedListener);
+        super.onDetachedFromWindow();
+    }
+
+    @Override
+    public LayoutParams generateLayoutParams(AttributeSet attrs) {
+        return new MarginLayoutParams(getContext(), attrs);
+    }
+
+    @Override
+    protected LayoutParams generateDefaultLayoutParams() {
+        return new MarginLayoutParams(LayoutParams.WRAP_CONTENT, LayoutParams.WRAP_CONTENT);
+    }
+
+    @Override
+    protected LayoutParams generateLayoutParams(LayoutParams p) {
+        return new MarginLayoutParams(p);
+    }
+
+    @Override
+    protected boolean checkLayoutParams(LayoutParams p) {
+        return p instanceof MarginLayoutParams;
     }
 
     /**
@@ -252,11 +688,10 @@ public class XFlowLayout extends ViewGroup {
      * @return
      */
     public int getFirstLineSize() {
-        try {
-            return mViews.get(0).size();
-        } catch (Throwable e) {
+        if (mLines.getLineCount() == 0) {
+            return 0;
         }
-        return 0;
+        return mLines.getLineItemCount(0);
     }
 
     /**
@@ -276,8 +711,4 @@ public class XFlowLayout extends ViewGroup {
         resetLayout();
     }
 
-    public XBaseAdapter getAdapter() {
-        return mAdapter;
-    }
-
 }
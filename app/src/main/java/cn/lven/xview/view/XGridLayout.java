@@ -2,10 +2,16 @@ package cn.lven.xview.view;
 
 import android.content.Context;
 import android.content.res.TypedArray;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
 import android.util.AttributeSet;
+import android.util.TypedValue;
 import android.view.View;
 
 import cn.lven.xview.R;
+import cn.lven.xview.view.measure.GridMeasure;
+import cn.lven.xview.view.metrics.LayoutMetrics;
 
 
 /**
@@ -33,6 +39,60 @@ public class XGridLayout extends AdapterLayout {
      * 条目的宽高是否一样
      */
     private boolean isSquare;
+    /**
+     * 条目固定的高宽比，大于0时高度固定
+     */
+    private float mItemAspectRatio;
+    /**
+     * 条目固定的高度，大于0时高度固定
+     */
+    private int mItemHeight;
+    // 上一次测量的条目宽度和固定的高度（不固定是-1）
+    private int mItemWidth;
+    private int mCellHeight = -1;
+    // 高度不固定时每一行的高度
+    private int[] mRowHeights = new int[0];
+    // 这一次测量条目的参数
+    private int mItemSpec;
+    private int mHeightSpec;
+    private final GridMeasure.ItemMeasurer mItemMeasurer = new GridMeasure.ItemMeasurer() {
+        @Override
+        public int measureItem(int position, int itemWidth, int cellHeight) {
+            View child = getChildAt(position);
+            if (cellHeight < 0) {
+                measureChild(child, mItemSpec, mHeightSpec);
+                return child.getMeasuredHeight();
+            }
+            // 高度固定：尺寸没变的子View不再测量
+            if (child.isLayoutRequested() || child.getMeasuredWidth() != itemWidth
+                    || child.getMeasuredHeight() != cellHeight) {
+                measureChildExactly(child, mItemSpec,
+                        View.MeasureSpec.makeMeasureSpec(cellHeight, View.MeasureSpec.EXACTLY));
+            }
+            return cellHeight;
+        }
+    };
+    private final GridMeasure.ItemPlacer mItemPlacer = new GridMeasure.ItemPlacer() {
+        @Override
+        public void placeItem(int position, int left, int top) {
+            View child = getChildAt(position);
+            if (child.getVisibility() != GONE) {
+                child.layout(left, top, left + child.getMeasuredWidth(), top + child.getMeasuredHeight());
+            }
+        }
+    };
+    /**
+     * 超过最大个数时，在最后一个条目上显示 +N，不创建多余的View
+     */
+    private boolean isShowOverflow;
+    private Paint mOverflowTextPaint;
+    private Paint mOverflowMaskPaint;
+    // 上一次画的 +N，个数没变就不再拼字符串
+    private String mOverflowText;
+    private int mOverflowTextCount;
+    private final Paint.FontMetrics mOverflowFontMetrics = new Paint.FontMetrics();
+    // 文字基线相对条目中心的偏移，文字大小改变时重新计算
+    private float mOverflowBaselineOffset;
 
     public XGridLayout(Context context) {
         this(context, null);
@@ -51,49 +111,53 @@ public class XGridLayout extends AdapterLayout {
         mVerticalSpace = (int) array.getDimension(R.styleable.XGridLayout_gridVerticalSpace, mVerticalSpace);
         mMaxItem = array.getInteger(R.styleable.XGridLayout_gridMaxItem, mMaxItem);
         isSquare = array.getBoolean(R.styleable.XGridLayout_gridIsSquare, false);
+        mItemAspectRatio = array.getFloat(R.styleable.XGridLayout_gridItemAspectRatio, 0);
+        mItemHeight = array.getDimensionPixelSize(R.styleable.XGridLayout_gridItemHeight, 0);
+        isShowOverflow = array.getBoolean(R.styleable.XGridLayout_gridShowOverflow, false);
+        float defaultTextSize = TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_SP, 20,
+                getResources().getDisplayMetrics());
+        mOverflowTextPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        mOverflowTextPaint.setTextAlign(Paint.Align.CENTER);
+        mOverflowTextPaint.setTextSize(array.getDimension(R.styleable.XGridLayout_gridOverflowTextSize, defaultTextSize));
+        mOverflowTextPaint.setColor(array.getColor(R.styleable.XGridLayout_gridOverflowTextColor, Color.WHITE));
+        updateOverflowBaseline();
+        mOverflowMaskPaint = new Paint();
+        mOverflowMaskPaint.setColor(array.getColor(R.styleable.XGridLayout_gridOverflowMaskColor, 0x66000000));
         array.recycle();
     }
 
     @Override
     protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
-        super.onMeasure(widthMeasureSpec, heightMeasureSpec);
+        long start = beginPass(LayoutMetrics.STAGE_MEASURE);
+        measureGrid(widthMeasureSpec, heightMeasureSpec);
+        endPass(LayoutMetrics.STAGE_MEASURE, start);
+    }
+
+    private void measureGrid(int widthMeasureSpec, int heightMeasureSpec) {
         // 获取控件的宽度
         int width = View.MeasureSpec.getSize(widthMeasureSpec);
         // 计算单个子View的宽度
-        int itemWidth = (width - getPaddingLeft() - getPaddingRight() - mHorizontalSpace * (mSpan - 1)) / mSpan;
-        // 测量子View的宽高
-        int childCount = getChildCount();
+        int itemWidth = GridMeasure.itemWidth(width, getPaddingLeft() + getPaddingRight(), mSpan, mHorizontalSpace);
+        mItemWidth = itemWidth;
+        // 宽高一样也是固定的高度
+        mCellHeight = GridMeasure.cellHeight(itemWidth, isSquare ? 1 : mItemAspectRatio, mItemHeight);
         // 计算一下最大的条目数量
-        childCount = Math.min(childCount, mMaxItem);
+        int childCount = Math.min(getChildCount(), mMaxItem);
         if (childCount <= 0) {
             setMeasuredDimension(0, 0);
             return;
         }
-        int height = 0;
-        for (int i = 0; i < childCount; i++) {
-            View child = getChildAt(i);
-            int itemSpec = View.MeasureSpec.makeMeasureSpec(itemWidth, View.MeasureSpec.EXACTLY);
-            // 判断条目宽高是否一样
-            if (isSquare) {
-                measureChild(child, itemSpec, itemSpec);
-            } else {
-                measureChild(child, itemSpec, heightMeasureSpec);
-
-                if (i != 0) {
-                    // 换行就加多一个高度
-                    if ((i) % mSpan == 0) {
-                        height += child.getMeasuredHeight() + mVerticalSpace;
-                    }
-                } else {
-                    height += child.getMeasuredHeight();
-                }
+        mItemSpec = View.MeasureSpec.makeMeasureSpec(itemWidth, View.MeasureSpec.EXACTLY);
+        mHeightSpec = heightMeasureSpec;
+        if (mCellHeight < 0) {
+            // 高度不固定：每一行取最高的
+            int rowCount = GridMeasure.rowCount(childCount, mSpan);
+            if (mRowHeights.length < rowCount) {
+                mRowHeights = new int[rowCount];
             }
         }
-        // 判断条目宽高是否一样
-        if (isSquare) {
-            height = itemWidth * (childCount % mSpan == 0 ? (childCount / mSpan) : (childCount / mSpan + 1))
-                    + mVerticalSpace * ((childCount - 1) / mSpan);
-        }
+        int height = GridMeasure.measure(childCount, mSpan, itemWidth, mCellHeight, mVerticalSpace,
+                mRowHeights, mItemMeasurer);
         height += getPaddingTop() + getPaddingBottom();
         // 指定自己的宽高
         setMeasuredDimension(width, height);
@@ -101,58 +165,142 @@ public class XGridLayout extends AdapterLayout {
 
     @Override
     protected void onLayout(boolean changed, int l, int t, int r, int b) {
-        int childCount = getChildCount();
+        long start = beginPass(LayoutMetrics.STAGE_LAYOUT);
+        layoutGrid();
+        endPass(LayoutMetrics.STAGE_LAYOUT, start);
+    }
+
+    private void layoutGrid() {
         // 计算一下最大的条目数量
-        childCount = Math.min(childCount, mMaxItem);
+        int childCount = Math.min(getChildCount(), mMaxItem);
         if (childCount <= 0) {
             return;
         }
-        int cl = getPaddingLeft();
-        int ct = getPaddingTop();
-        for (int i = 0; i < childCount; i++) {
+        GridMeasure.layout(childCount, mSpan, mItemWidth, mCellHeight, mRowHeights,
+                mHorizontalSpace, mVerticalSpace, getPaddingLeft(), getPaddingTop(), mItemPlacer);
+    }
+
+    @Override
+    protected void dispatchDraw(Canvas canvas) {
+        super.dispatchDraw(canvas);
+        int overflow = getOverflowCount();
+        int childCount = getChildCount();
+        if (overflow <= 0 || childCount == 0) {
+            return;
+        }
+        // 盖在最后一个显示的条目上，GONE的没有摆放，位置不对
+        View last = null;
+        for (int i = Math.min(childCount, mMaxItem) - 1; i >= 0; i--) {
             View child = getChildAt(i);
-            if (child.getVisibility() == GONE) {
-                continue;
-            }
-            int width = child.getMeasuredWidth();
-            int height = child.getMeasuredHeight();
-            child.layout(cl, ct, cl + width, ct + height);
-            // 累加宽度
-            cl += width + mHorizontalSpace;
-            // 如果是换行
-            if ((i + 1) % mSpan == 0) {
-                // 重置左边的位置
-                cl = getPaddingLeft();
-                // 叠加高度
-                ct += height + mVerticalSpace;
+            if (child.getVisibility() != GONE) {
+                last = child;
+                break;
             }
         }
+        if (last == null) {
+            return;
+        }
+        canvas.drawRect(last.getLeft(), last.getTop(), last.getRight(), last.getBottom(), mOverflowMaskPaint);
+        float baseline = (last.getTop() + last.getBottom()) / 2f + mOverflowBaselineOffset;
+        if (mOverflowText == null || mOverflowTextCount != overflow) {
+            mOverflowText = "+" + overflow;
+            mOverflowTextCount = overflow;
+        }
+        canvas.drawText(mOverflowText, (last.getLeft() + last.getRight()) / 2f, baseline, mOverflowTextPaint);
     }
 
     /**
-     * 重新添加布局
+     * 没有显示出来的条目个数，没有开启 +N 时返回0
      */
-    protected void resetLayout() {
-        if (mAdapter == null) {
-            return;
+    public int getOverflowCount() {
+        if (!isShowOverflow || mAdapter == null) {
+            return 0;
         }
-        removeAllViews();
-        int count = mAdapter.getCount();
-        count = Math.min(count, mMaxItem);
-        for (int i = 0; i < count; i++) {
-            View view = mAdapter.getView(i, this);
-            addView(view);
+        return Math.max(mAdapter.getCount() - mMaxItem, 0);
+    }
+
+    @Override
+    protected void resetLayout() {
+        super.resetLayout();
+        invalidateOverflow();
+    }
+
+    @Override
+    protected void onItemRangeInserted(int positionStart, int itemCount) {
+        super.onItemRangeInserted(positionStart, itemCount);
+        invalidateOverflow();
+    }
+
+    @Override
+    protected void onItemRangeRemoved(int positionStart, int itemCount) {
+        super.onItemRangeRemoved(positionStart, itemCount);
+        invalidateOverflow();
+    }
+
+    private void invalidateOverflow() {
+        if (isShowOverflow) {
+            // 个数变了，+N 要重新画
+            invalidate();
         }
     }
 
+    @Override
+    protected int getLayoutCount(int adapterCount) {
+        return Math.min(adapterCount, mMaxItem);
+    }
+
     /**
      * 设置最大显示个数
      *
      * @param maxItem
      */
     public void setMaxItem(int maxItem) {
+        if (mMaxItem == maxItem) {
+            return;
+        }
         mMaxItem = maxItem;
-        resetLayout();
+        // 只添加或移除差的个数，隐藏的条目不会绑定
+        syncLayoutCount();
+        requestLayout();
+        invalidateOverflow();
+    }
+
+    /**
+     * 设置超过最大个数时，是否在最后一个条目上显示 +N
+     */
+    public void setShowOverflow(boolean showOverflow) {
+        isShowOverflow = showOverflow;
+        invalidate();
+    }
+
+    /**
+     * 设置 +N 的文字大小，单位px
+     */
+    public void setOverflowTextSize(float textSize) {
+        mOverflowTextPaint.setTextSize(textSize);
+        updateOverflowBaseline();
+        invalidate();
+    }
+
+    /**
+     * 文字垂直居中的基线偏移，绘制时不用每次获取FontMetrics
+     */
+    private void updateOverflowBaseline() {
+        mOverflowTextPaint.getFontMetrics(mOverflowFontMetrics);
+        mOverflowBaselineOffset = -(mOverflowFontMetrics.ascent + mOverflowFontMetrics.descent) / 2;
+    }
+
+    public void setOverflowTextColor(int color) {
+        mOverflowTextPaint.setColor(color);
+        invalidate();
+    }
+
+    /**
+     * 设置 +N 的背景遮罩颜色
+     */
+    public void setOverflowMaskColor(int color) {
+        mOverflowMaskPaint.setColor(color);
+        invalidate();
     }
 
     /**
@@ -160,7 +308,23 @@ public class XGridLayout extends AdapterLayout {
      */
     public void setGridSpan(int mSpanx) {
         mSpan = mSpanx;
-        invalidate();
+        requestLayout();
+    }
+
+    /**
+     * 设置条目固定的高宽比（高/宽），大于0时不用测量子View就能算出高度
+     */
+    public void setItemAspectRatio(float aspectRatio) {
+        mItemAspectRatio = aspectRatio;
+        requestLayout();
+    }
+
+    /**
+     * 设置条目固定的高度，大于0时不用测量子View就能算出高度，优先于高宽比
+     */
+    public void setItemHeight(int itemHeight) {
+        mItemHeight = itemHeight;
+        requestLayout();
     }
 
 
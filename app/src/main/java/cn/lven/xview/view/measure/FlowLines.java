@@ -0,0 +1,363 @@
+package cn.lven.xview.view.measure;
+
+
+/**
+ * 流式布局的换行计算，只用int数组保存，预热之后测量和摆放不再分配内存
+ * 条目的尺寸是包含margin的占据尺寸，宽度小于0表示GONE
+ */
+
+public class FlowLines {
+    private static final int CLEAN = Integer.MAX_VALUE;
+    /**
+     * 还不知道尺寸的条目
+     */
+    private static final int UNKNOWN_SIZE = -2;
+
+    // 条目的尺寸
+    private int[] mItemWidths = new int[16];
+    private int[] mItemHeights = new int[16];
+    private int mItemCount;
+
+    // 每行的第一个条目、结束位置（不包含）、可见条目数、宽、高、顶部位置
+    private int[] mLineStarts = new int[8];
+    private int[] mLineEnds = new int[8];
+    private int[] mLineItemCounts = new int[8];
+    private int[] mLineWidths = new int[8];
+    private int[] mLineHeights = new int[8];
+    private int[] mLineTops = new int[8];
+    private int mLineCount;
+
+    private int mAvailableWidth = -1;
+    // 从哪个条目开始需要重新换行
+    private int mDirtyIndex = 0;
+
+    // 统计
+    private int mCacheHitCount;
+    private int mRewrapCount;
+    private int mRewrapItemCount;
+
+    /**
+     * 设置条目个数，个数变了从变化的位置开始重新换行，新增的条目尺寸未知
+     */
+    public void setItemCount(int count) {
+        if (count == mItemCount) {
+            return;
+        }
+        ensureItemCapacity(count);
+        for (int i = mItemCount; i < count; i++) {
+            mItemWidths[i] = UNKNOWN_SIZE;
+            mItemHeights[i] = UNKNOWN_SIZE;
+        }
+        markDirty(Math.min(count, mItemCount));
+        mItemCount = count;
+    }
+
+    /**
+     * 插入条目，后面的条目往后移，插入的条目尺寸未知
+     */
+    public void insertItems(int positionStart, int itemCount) {
+        ensureItemCapacity(mItemCount + itemCount);
+        int moveCount = mItemCount - positionStart;
+        System.arraycopy(mItemWidths, positionStart, mItemWidths, positionStart + itemCount, moveCount);
+        System.arraycopy(mItemHeights, positionStart, mItemHeights, positionStart + itemCount, moveCount);
+        for (int i = positionStart; i < positionStart + itemCount; i++) {
+            mItemWidths[i] = UNKNOWN_SIZE;
+            mItemHeights[i] = UNKNOWN_SIZE;
+        }
+        mItemCount += itemCount;
+        markDirty(positionStart);
+    }
+
+    /**
+     * 移除条目，后面的条目往前移
+     */
+    public void removeItems(int positionStart, int itemCount) {
+        int end = Math.min(positionStart + itemCount, mItemCount);
+        int moveCount = mItemCount - end;
+        System.arraycopy(mItemWidths, end, mItemWidths, positionStart, moveCount);
+        System.arraycopy(mItemHeights, end, mItemHeights, positionStart, moveCount);
+        mItemCount -= end - positionStart;
+        markDirty(positionStart);
+    }
+
+    /**
+     * 条目的尺寸需要重新获取
+     */
+    public void invalidateItemSize(int index) {
+        if (mItemWidths[index] != UNKNOWN_SIZE) {
+            mItemWidths[index] = UNKNOWN_SIZE;
+            mItemHeights[index] = UNKNOWN_SIZE;
+            markDirty(index);
+        }
+    }
+
+    /**
+     * 是否已经知道条目的尺寸
+     */
+    public boolean isItemSizeKnown(int index) {
+        return mItemWidths[index] != UNKNOWN_SIZE;
+    }
+
+    public int getItemCount() {
+        return mItemCount;
+    }
+
+    /**
+     * 设置条目占据的宽高，宽度小于0表示GONE
+     */
+    public void setItemSize(int index, int width, int height) {
+        if (width < 0) {
+            width = -1;
+            height = -1;
+        }
+        if (mItemWidths[index] != width || mItemHeights[index] != height) {
+            mItemWidths[index] = width;
+            mItemHeights[index] = height;
+            markDirty(index);
+        }
+    }
+
+    public int getItemWidth(int index) {
+        return mItemWidths[index];
+    }
+
+    public int getItemHeight(int index) {
+        return mItemHeights[index];
+    }
+
+    /**
+     * 设置一行可以摆放的宽度，宽度变了全部重新换行
+     */
+    public void setAvailableWidth(int availableWidth) {
+        if (mAvailableWidth != availableWidth) {
+            mAvailableWidth = availableWidth;
+            markDirty(0);
+        }
+    }
+
+    public int getAvailableWidth() {
+        return mAvailableWidth;
+    }
+
+    /**
+     * 标记某个条目之后需要重新换行
+     */
+    public void markDirty(int index) {
+        mDirtyIndex = Math.min(mDirtyIndex, Math.max(index, 0));
+    }
+
+    public boolean isDirty() {
+        return mDirtyIndex != CLEAN;
+    }
+
+    /**
+     * 计算换行，只从脏的条目所在的行开始
+     */
+    public void compute() {
+        if (mDirtyIndex == CLEAN) {
+            mCacheHitCount++;
+            return;
+        }
+        mRewrapCount++;
+        // 脏条目所在的行，前面的行不受影响
+        int line = findLine(mDirtyIndex);
+        if (line > 0 && mLineStarts[line] == mDirtyIndex) {
+            // 行首的条目变小了可能会放到上一行
+            line--;
+        }
+        int start = line <= 0 ? 0 : mLineStarts[line];
+        mLineCount = Math.max(line, 0);
+        mDirtyIndex = CLEAN;
+
+        int lineWidth = 0;
+        int lineHeight = 0;
+        int lineItemCount = 0;
+        int lineStart = start;
+        for (int i = start; i < mItemCount; i++) {
+            int itemWidth = mItemWidths[i];
+            if (itemWidth < 0) {
+                continue;
+            }
+            mRewrapItemCount++;
+            // 如果行宽 + 条目的宽度 > 可以摆放的宽度，换行
+            if (lineItemCount > 0 && lineWidth + itemWidth > mAvailableWidth) {
+                addLine(lineStart, i, lineItemCount, lineWidth, lineHeight);
+                lineWidth = 0;
+                lineHeight = 0;
+                lineItemCount = 0;
+            }
+            if (lineItemCount == 0) {
+                lineStart = i;
+            }
+            lineWidth += itemWidth;
+            lineHeight = Math.max(lineHeight, mItemHeights[i]);
+            lineItemCount++;
+        }
+        if (lineItemCount > 0) {
+            addLine(lineStart, mItemCount, lineItemCount, lineWidth, lineHeight);
+        }
+    }
+
+    /**
+     * 条目所在的行，在第一行前面返回0
+     */
+    private int findLine(int index) {
+        int low = 0;
+        int high = mLineCount - 1;
+        int line = 0;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (mLineStarts[mid] <= index) {
+                line = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return line;
+    }
+
+    private void addLine(int start, int end, int itemCount, int width, int height) {
+        if (mLineCount == mLineStarts.length) {
+            int capacity = mLineCount * 2;
+            mLineStarts = grow(mLineStarts, capacity);
+            mLineEnds = grow(mLineEnds, capacity);
+            mLineItemCounts = grow(mLineItemCounts, capacity);
+            mLineWidths = grow(mLineWidths, capacity);
+            mLineHeights = grow(mLineHeights, capacity);
+            mLineTops = grow(mLineTops, capacity);
+        }
+        mLineTops[mLineCount] = mLineCount == 0 ? 0 : mLineTops[mLineCount - 1] + mLineHeights[mLineCount - 1];
+        mLineStarts[mLineCount] = start;
+        mLineEnds[mLineCount] = end;
+        mLineItemCounts[mLineCount] = itemCount;
+        mLineWidths[mLineCount] = width;
+        mLineHeights[mLineCount] = height;
+        mLineCount++;
+    }
+
+    private void ensureItemCapacity(int count) {
+        if (mItemWidths.length >= count) {
+            return;
+        }
+        int capacity = Math.max(count, mItemWidths.length * 2);
+        mItemWidths = grow(mItemWidths, capacity);
+        mItemHeights = grow(mItemHeights, capacity);
+    }
+
+    private static int[] grow(int[] array, int capacity) {
+        int[] newArray = new int[capacity];
+        System.arraycopy(array, 0, newArray, 0, array.length);
+        return newArray;
+    }
+
+    public int getLineCount() {
+        return mLineCount;
+    }
+
+    /**
+     * 行的第一个条目
+     */
+    public int getLineStart(int line) {
+        return mLineStarts[line];
+    }
+
+    /**
+     * 行的结束位置（不包含），中间可能有GONE的条目
+     */
+    public int getLineEnd(int line) {
+        return mLineEnds[line];
+    }
+
+    /**
+     * 行里面可见条目的个数
+     */
+    public int getLineItemCount(int line) {
+        return mLineItemCounts[line];
+    }
+
+    public int getLineWidth(int line) {
+        return mLineWidths[line];
+    }
+
+    public int getLineHeight(int line) {
+        return mLineHeights[line];
+    }
+
+    /**
+     * 行的顶部位置（不包含padding）
+     */
+    public int getLineTop(int line) {
+        return mLineTops[line];
+    }
+
+    /**
+     * 某个高度所在的行，超出范围时返回第一行或最后一行
+     */
+    public int findLineAt(int y) {
+        int low = 0;
+        int high = mLineCount - 1;
+        int line = 0;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (mLineTops[mid] <= y) {
+                line = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return line;
+    }
+
+    /**
+     * 前几行最宽的宽度
+     */
+    public int getMaxWidth(int lineLimit) {
+        int width = 0;
+        int count = Math.min(lineLimit, mLineCount);
+        for (int i = 0; i < count; i++) {
+            width = Math.max(width, mLineWidths[i]);
+        }
+        return width;
+    }
+
+    /**
+     * 前几行高度的和
+     */
+    public int getTotalHeight(int lineLimit) {
+        int height = 0;
+        int count = Math.min(lineLimit, mLineCount);
+        for (int i = 0; i < count; i++) {
+            height += mLineHeights[i];
+        }
+        return height;
+    }
+
+    /**
+     * 不需要重新换行的次数
+     */
+    public int getCacheHitCount() {
+        return mCacheHitCount;
+    }
+
+    /**
+     * 重新换行的次数
+     */
+    public int getRewrapCount() {
+        return mRewrapCount;
+    }
+
+    /**
+     * 重新换行时处理过的条目个数
+     */
+    public int getRewrapItemCount() {
+        return mRewrapItemCount;
+    }
+
+    public void resetStats() {
+        mCacheHitCount = 0;
+        mRewrapCount = 0;
+        mRewrapItemCount = 0;
+    }
+}
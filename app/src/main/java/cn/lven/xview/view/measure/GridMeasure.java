@@ -0,0 +1,165 @@
+package cn.lven.xview.view.measure;
+
+
+/**
+ * 网格布局的尺寸计算
+ */
+
+public final class GridMeasure {
+
+    /**
+     * 测量一个条目，网格布局里面是测量子View
+     */
+    public interface ItemMeasurer {
+        /**
+         * @param cellHeight 固定的高度，不固定时是-1
+         * @return 测量出来的高度
+         */
+        int measureItem(int position, int itemWidth, int cellHeight);
+    }
+
+    /**
+     * 摆放一个条目
+     */
+    public interface ItemPlacer {
+        void placeItem(int position, int left, int top);
+    }
+
+    private GridMeasure() {
+    }
+
+    /**
+     * 测量所有条目，高度固定时直接算，不固定时每一行取最高的
+     *
+     * @param cellHeight 固定的高度，不固定时是-1
+     * @param rowHeights 高度不固定时放入每一行的高度，长度至少是行数
+     * @return 所有条目的高度（不包含padding）
+     */
+    public static int measure(int count, int span, int itemWidth, int cellHeight, int verticalSpace,
+                              int[] rowHeights, ItemMeasurer measurer) {
+        if (count <= 0) {
+            return 0;
+        }
+        if (cellHeight >= 0) {
+            for (int i = 0; i < count; i++) {
+                measurer.measureItem(i, itemWidth, cellHeight);
+            }
+            return fixedHeight(count, span, cellHeight, verticalSpace);
+        }
+        int rowCount = rowCount(count, span);
+        for (int i = 0; i < rowCount; i++) {
+            rowHeights[i] = 0;
+        }
+        for (int i = 0; i < count; i++) {
+            int height = measurer.measureItem(i, itemWidth, -1);
+            int row = row(i, span);
+            rowHeights[row] = Math.max(rowHeights[row], height);
+        }
+        return rowsHeight(rowHeights, rowCount, verticalSpace);
+    }
+
+    /**
+     * 按行摆放所有条目，换行时叠加上一行的高度
+     *
+     * @param cellHeight 固定的高度，不固定时是-1，用 rowHeights 里面每一行的高度
+     */
+    public static void layout(int count, int span, int itemWidth, int cellHeight, int[] rowHeights,
+                              int horizontalSpace, int verticalSpace, int paddingLeft, int paddingTop,
+                              ItemPlacer placer) {
+        int top = paddingTop;
+        for (int i = 0; i < count; i++) {
+            if (i > 0 && column(i, span) == 0) {
+                top += (cellHeight >= 0 ? cellHeight : rowHeights[row(i - 1, span)]) + verticalSpace;
+            }
+            placer.placeItem(i, left(i, span, itemWidth, horizontalSpace, paddingLeft), top);
+        }
+    }
+
+    /**
+     * 单个条目的宽度
+     *
+     * @param width             控件的宽度
+     * @param horizontalPadding 左右padding的和
+     */
+    public static int itemWidth(int width, int horizontalPadding, int span, int horizontalSpace) {
+        return (width - horizontalPadding - horizontalSpace * (span - 1)) / span;
+    }
+
+    /**
+     * 行数
+     */
+    public static int rowCount(int count, int span) {
+        return count % span == 0 ? count / span : count / span + 1;
+    }
+
+    /**
+     * 条目在第几行
+     */
+    public static int row(int position, int span) {
+        return position / span;
+    }
+
+    /**
+     * 条目在第几列
+     */
+    public static int column(int position, int span) {
+        return position % span;
+    }
+
+    /**
+     * 条目宽高一样时，所有条目的高度（不包含padding）
+     */
+    public static int squareHeight(int count, int span, int itemWidth, int verticalSpace) {
+        return fixedHeight(count, span, itemWidth, verticalSpace);
+    }
+
+    /**
+     * 条目固定的高度
+     *
+     * @param aspectRatio 高宽比，小于等于0表示没有
+     * @param itemHeight  固定的高度，小于等于0表示没有，优先使用
+     * @return 不固定返回-1
+     */
+    public static int cellHeight(int itemWidth, float aspectRatio, int itemHeight) {
+        if (itemHeight > 0) {
+            return itemHeight;
+        }
+        if (aspectRatio > 0) {
+            return Math.round(itemWidth * aspectRatio);
+        }
+        return -1;
+    }
+
+    /**
+     * 条目高度固定时，所有条目的高度（不包含padding）
+     */
+    public static int fixedHeight(int count, int span, int cellHeight, int verticalSpace) {
+        if (count <= 0) {
+            return 0;
+        }
+        return cellHeight * rowCount(count, span) + verticalSpace * ((count - 1) / span);
+    }
+
+    /**
+     * 每行高度不一样时，所有行的高度（不包含padding）
+     *
+     * @param rowHeights 每一行最高的条目高度
+     */
+    public static int rowsHeight(int[] rowHeights, int rowCount, int verticalSpace) {
+        if (rowCount <= 0) {
+            return 0;
+        }
+        int height = verticalSpace * (rowCount - 1);
+        for (int i = 0; i < rowCount; i++) {
+            height += rowHeights[i];
+        }
+        return height;
+    }
+
+    /**
+     * 条目的左边位置
+     */
+    public static int left(int position, int span, int itemWidth, int horizontalSpace, int paddingLeft) {
+        return paddingLeft + column(position, span) * (itemWidth + horizontalSpace);
+    }
+}
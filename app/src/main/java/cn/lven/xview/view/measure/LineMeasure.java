@@ -0,0 +1,34 @@
+package cn.lven.xview.view.measure;
+
+
+/**
+ * 平放叠加布局的尺寸计算，后一个条目相对前一个条目偏移自己宽度的一定比例
+ */
+
+public final class LineMeasure {
+
+    private LineMeasure() {
+    }
+
+    /**
+     * 下一个条目相对前一个条目的偏移
+     */
+    public static int offset(int childWidth, float marginRate) {
+        return (int) (marginRate * childWidth + 0.5f);
+    }
+
+    /**
+     * 所有条目占据的宽度（不包含padding）
+     */
+    public static int width(int[] childWidths, int count, float marginRate) {
+        int left = 0;
+        int width = 0;
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                left += offset(childWidths[i], marginRate);
+            }
+            width = Math.max(width, left + childWidths[i]);
+        }
+        return width;
+    }
+}
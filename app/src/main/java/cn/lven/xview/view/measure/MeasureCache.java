@@ -0,0 +1,171 @@
+package cn.lven.xview.view.measure;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+
+/**
+ * 条目测量结果的LRU缓存，Key是适配器给的条目内容加上测量参数
+ * 内容一样的条目（比如同样文字的标签）直接用上次的宽高，不用重新测量文字
+ * 只在主线程使用，查找不分配内存
+ */
+
+public class MeasureCache {
+    public static final int DEFAULT_MAX_SIZE = 512;
+
+    private final LinkedHashMap<Key, int[]> mEntries;
+    private int mMaxSize;
+    // 查找时复用的Key
+    private final Key mLookupKey = new Key();
+
+    // 统计
+    private int mHitCount;
+    private int mMissCount;
+    private int mPassHitCount;
+    private int mPassMissCount;
+
+    public MeasureCache() {
+        this(DEFAULT_MAX_SIZE);
+    }
+
+    public MeasureCache(int maxSize) {
+        mMaxSize = Math.max(maxSize, 0);
+        mEntries = new LinkedHashMap<Key, int[]>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, int[]> eldest) {
+                return size() > mMaxSize;
+            }
+        };
+    }
+
+    /**
+     * 查找测量结果
+     *
+     * @param outSize 放入测量的宽、高，以及左右margin之和、上下margin之和
+     * @return 没有返回false
+     */
+    public boolean get(Object itemKey, int widthMeasureSpec, int heightMeasureSpec, int[] outSize) {
+        if (itemKey == null || mMaxSize == 0) {
+            return false;
+        }
+        mLookupKey.set(itemKey, widthMeasureSpec, heightMeasureSpec);
+        int[] size = mEntries.get(mLookupKey);
+        mLookupKey.set(null, 0, 0);
+        if (size == null) {
+            mMissCount++;
+            mPassMissCount++;
+            return false;
+        }
+        System.arraycopy(size, 0, outSize, 0, size.length);
+        mHitCount++;
+        mPassHitCount++;
+        return true;
+    }
+
+    /**
+     * 保存测量结果
+     */
+    public void put(Object itemKey, int widthMeasureSpec, int heightMeasureSpec,
+                    int width, int height, int marginWidth, int marginHeight) {
+        if (itemKey == null || mMaxSize == 0) {
+            return;
+        }
+        Key key = new Key();
+        key.set(itemKey, widthMeasureSpec, heightMeasureSpec);
+        mEntries.put(key, new int[]{width, height, marginWidth, marginHeight});
+    }
+
+    /**
+     * 设置最多缓存的个数，0不缓存
+     */
+    public void setMaxSize(int maxSize) {
+        mMaxSize = Math.max(maxSize, 0);
+        trimToSize();
+    }
+
+    public int getMaxSize() {
+        return mMaxSize;
+    }
+
+    private void trimToSize() {
+        while (mEntries.size() > mMaxSize) {
+            Key eldest = mEntries.keySet().iterator().next();
+            mEntries.remove(eldest);
+        }
+    }
+
+    public int size() {
+        return mEntries.size();
+    }
+
+    /**
+     * 清空缓存，比如条目的样式变了
+     */
+    public void clear() {
+        mEntries.clear();
+    }
+
+    /**
+     * 开始一次测量，清空这一次的统计
+     */
+    public void beginPass() {
+        mPassHitCount = 0;
+        mPassMissCount = 0;
+    }
+
+    /**
+     * 最近一次测量命中的个数
+     */
+    public int getPassHitCount() {
+        return mPassHitCount;
+    }
+
+    /**
+     * 最近一次测量没命中的个数
+     */
+    public int getPassMissCount() {
+        return mPassMissCount;
+    }
+
+    public int getHitCount() {
+        return mHitCount;
+    }
+
+    public int getMissCount() {
+        return mMissCount;
+    }
+
+    public void resetStats() {
+        mHitCount = 0;
+        mMissCount = 0;
+        mPassHitCount = 0;
+        mPassMissCount = 0;
+    }
+
+    private static class Key {
+        Object mItemKey;
+        int mWidthSpec;
+        int mHeightSpec;
+
+        void set(Object itemKey, int widthSpec, int heightSpec) {
+            mItemKey = itemKey;
+            mWidthSpec = widthSpec;
+            mHeightSpec = heightSpec;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return mWidthSpec == key.mWidthSpec && mHeightSpec == key.mHeightSpec
+                    && mItemKey.equals(key.mItemKey);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * (31 * mItemKey.hashCode() + mWidthSpec) + mHeightSpec;
+        }
+    }
+}
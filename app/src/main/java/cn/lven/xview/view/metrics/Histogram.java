@@ -0,0 +1,112 @@
+package cn.lven.xview.view.metrics;
+
+
+/**
+ * 按2的次方分桶的直方图，记录一个值只是加一个计数，不会分配内存
+ * 第i个桶放 [2^(i-1), 2^i) 的值，0放在第0个桶
+ */
+
+public class Histogram {
+    /**
+     * 桶的个数，long的所有正数都能放下
+     */
+    public static final int BUCKET_COUNT = 64;
+
+    private final long[] mBuckets = new long[BUCKET_COUNT];
+    private long mCount;
+    private long mTotal;
+    private long mMin = Long.MAX_VALUE;
+    private long mMax;
+
+    /**
+     * 记录一个值，负数当作0
+     */
+    public void record(long value) {
+        if (value < 0) {
+            value = 0;
+        }
+        mBuckets[bucketOf(value)]++;
+        mCount++;
+        mTotal += value;
+        if (value < mMin) {
+            mMin = value;
+        }
+        if (value > mMax) {
+            mMax = value;
+        }
+    }
+
+    /**
+     * 值所在的桶
+     */
+    public static int bucketOf(long value) {
+        return value <= 0 ? 0 : Math.min(64 - Long.numberOfLeadingZeros(value), BUCKET_COUNT - 1);
+    }
+
+    /**
+     * 桶里面值的上限（不包含）
+     */
+    public static long bucketUpperBound(int bucket) {
+        return bucket >= BUCKET_COUNT - 1 ? Long.MAX_VALUE : 1L << bucket;
+    }
+
+    /**
+     * 近似的百分位数，返回所在桶的上限，不会超过最大值
+     *
+     * @param percentile 0到100
+     */
+    public long getPercentile(double percentile) {
+        if (mCount == 0) {
+            return 0;
+        }
+        if (percentile <= 0) {
+            return mMin;
+        }
+        long target = (long) Math.ceil(mCount * Math.min(percentile, 100) / 100);
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += mBuckets[i];
+            if (seen >= target) {
+                return Math.max(Math.min(bucketUpperBound(i) - 1, mMax), mMin);
+            }
+        }
+        return mMax;
+    }
+
+    public long getBucketCount(int bucket) {
+        return mBuckets[bucket];
+    }
+
+    public long getCount() {
+        return mCount;
+    }
+
+    public long getTotal() {
+        return mTotal;
+    }
+
+    public long getMin() {
+        return mCount == 0 ? 0 : mMin;
+    }
+
+    public long getMax() {
+        return mMax;
+    }
+
+    public long getMean() {
+        return mCount == 0 ? 0 : mTotal / mCount;
+    }
+
+    /**
+     * 清空
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            mBuckets[i] = 0;
+        }
+        mCount = 0;
+        mTotal = 0;
+        mMin = Long.MAX_VALUE;
+        mMax = 0;
+    }
+}
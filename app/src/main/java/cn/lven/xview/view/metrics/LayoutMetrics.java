@@ -0,0 +1,139 @@
+package cn.lven.xview.view.metrics;
+
+
+/**
+ * 布局的耗时统计，设置给 AdapterLayout.setLayoutMetrics 之后开始记录
+ * 多个布局可以共用一个，统计就是合在一起的；没有设置时布局只多一次判空
+ * 只在主线程使用
+ */
+
+public class LayoutMetrics {
+    /**
+     * onMeasure，数量是这一次测量的子View个数
+     */
+    public static final int STAGE_MEASURE = 0;
+    /**
+     * onLayout，数量是子View个数
+     */
+    public static final int STAGE_LAYOUT = 1;
+    /**
+     * 数据改变后重新添加子View（resetLayout），数量是子View个数
+     */
+    public static final int STAGE_RESET = 2;
+    /**
+     * 适配器getView创建或绑定一个条目，数量是1
+     */
+    public static final int STAGE_GET_VIEW = 3;
+    /**
+     * 后台线程创建一个条目的View（onCreateView），数量是1
+     */
+    public static final int STAGE_INFLATE = 4;
+
+    public static final int STAGE_COUNT = 5;
+
+    private static final String[] STAGE_NAMES = {"measure", "layout", "reset", "getView", "inflate"};
+
+    /**
+     * 每次记录之后的回调
+     */
+    public interface Listener {
+        /**
+         * @param metrics       可以从这里取汇总的直方图
+         * @param stage         STAGE_开头的常量
+         * @param durationNanos 这一次的耗时，纳秒
+         * @param count         这一次处理的数量，意义见各个STAGE的说明
+         */
+        void onPass(LayoutMetrics metrics, int stage, long durationNanos, int count);
+    }
+
+    private final String mName;
+    private final Histogram[] mTimings = new Histogram[STAGE_COUNT];
+    private final Histogram mMeasuredChildren = new Histogram();
+    private Listener mListener;
+
+    public LayoutMetrics(String name) {
+        mName = name;
+        for (int i = 0; i < STAGE_COUNT; i++) {
+            mTimings[i] = new Histogram();
+        }
+    }
+
+    public LayoutMetrics(String name, Listener listener) {
+        this(name);
+        mListener = listener;
+    }
+
+    /**
+     * 记录一次
+     */
+    public void record(int stage, long durationNanos, int count) {
+        mTimings[stage].record(durationNanos);
+        if (stage == STAGE_MEASURE) {
+            mMeasuredChildren.record(count);
+        }
+        if (mListener != null) {
+            mListener.onPass(this, stage, durationNanos, count);
+        }
+    }
+
+    public void setListener(Listener listener) {
+        mListener = listener;
+    }
+
+    public String getName() {
+        return mName;
+    }
+
+    /**
+     * 某个阶段的耗时分布，纳秒
+     */
+    public Histogram getTiming(int stage) {
+        return mTimings[stage];
+    }
+
+    /**
+     * 某个阶段的次数
+     */
+    public long getPassCount(int stage) {
+        return mTimings[stage].getCount();
+    }
+
+    /**
+     * 每次测量时测量的子View个数分布
+     */
+    public Histogram getMeasuredChildren() {
+        return mMeasuredChildren;
+    }
+
+    public static String getStageName(int stage) {
+        return STAGE_NAMES[stage];
+    }
+
+    /**
+     * 清空统计，一般在上报之后调用
+     */
+    public void reset() {
+        for (int i = 0; i < STAGE_COUNT; i++) {
+            mTimings[i].reset();
+        }
+        mMeasuredChildren.reset();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder(mName);
+        for (int i = 0; i < STAGE_COUNT; i++) {
+            Histogram timing = mTimings[i];
+            builder.append(' ').append(STAGE_NAMES[i])
+                    .append("[n=").append(timing.getCount())
+                    .append(" mean=").append(timing.getMean())
+                    .append(" p50=").append(timing.getPercentile(50))
+                    .append(" p99=").append(timing.getPercentile(99))
+                    .append(" max=").append(timing.getMax())
+                    .append(']');
+        }
+        builder.append(" measuredChildren[mean=").append(mMeasuredChildren.getMean())
+                .append(" max=").append(mMeasuredChildren.getMax()).append(']');
+        return builder.toString();
+    }
+}
@@ -0,0 +1,100 @@
+package cn.lven.xview.adapter;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * 分页数据：占位、个数、保留的页数
+ */
+public class PagedListTest {
+
+    @Test
+    public void knownCount_placeholdersUntilLoaded() {
+        PagedList<String> list = new PagedList<>(10, 3);
+        list.setTotalCount(25);
+        assertEquals(25, list.size());
+        assertEquals(3, list.getPageCount());
+        assertNull(list.get(12));
+
+        list.putPage(1, page(10, 10));
+        assertEquals("item12", list.get(12));
+        assertNull(list.get(0));
+        // 最后一页不满，个数不变
+        list.putPage(2, page(20, 5));
+        assertEquals(25, list.size());
+        assertEquals("item24", list.get(24));
+    }
+
+    @Test
+    public void unknownCount_growsUntilShortPage() {
+        PagedList<String> list = new PagedList<>(10, 3);
+        assertEquals(0, list.size());
+        assertEquals(1, list.getPageCount());
+
+        list.putPage(0, page(0, 10));
+        assertEquals(10, list.size());
+        assertEquals(2, list.getPageCount());
+
+        list.putPage(1, page(10, 4));
+        assertEquals(14, list.size());
+        assertEquals(2, list.getPageCount());
+    }
+
+    @Test
+    public void trimAround_dropsFarthestPages() {
+        PagedList<String> list = new PagedList<>(10, 3);
+        list.setTotalCount(100);
+        for (int i = 0; i < 6; i++) {
+            list.putPage(i, page(i * 10, 10));
+        }
+        assertEquals(3, list.trimAround(4));
+        assertEquals(3, list.getLoadedPageCount());
+        assertTrue(list.isPageLoaded(3));
+        assertTrue(list.isPageLoaded(4));
+        assertTrue(list.isPageLoaded(5));
+        // 丢掉的页变回占位，个数不变
+        assertNull(list.get(5));
+        assertEquals(100, list.size());
+    }
+
+    @Test
+    public void trimAround_keepsPagesInRange() {
+        PagedList<String> list = new PagedList<>(10, 3);
+        list.setTotalCount(100);
+        for (int i = 0; i < 6; i++) {
+            list.putPage(i, page(i * 10, 10));
+        }
+        assertEquals(3, list.trimAround(1, 3));
+        assertTrue(list.isPageLoaded(1));
+        assertTrue(list.isPageLoaded(2));
+        assertTrue(list.isPageLoaded(3));
+        // 可见的页比最多的页数还多时全部保留
+        for (int i = 0; i < 6; i++) {
+            list.putPage(i, page(i * 10, 10));
+        }
+        assertEquals(0, list.trimAround(0, 5));
+        assertEquals(6, list.getLoadedPageCount());
+    }
+
+    @Test
+    public void add_notSupported() {
+        try {
+            new PagedList<String>(10, 3).add("a");
+            fail();
+        } catch (UnsupportedOperationException e) {
+            // 只能通过putPage修改
+        }
+    }
+
+    private static List<String> page(int start, int count) {
+        List<String> items = new ArrayList<>();
+        for (int i = start; i < start + count; i++) {
+            items.add("item" + i);
+        }
+        return items;
+    }
+}
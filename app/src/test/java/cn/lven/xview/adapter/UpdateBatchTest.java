@@ -0,0 +1,131 @@
+package cn.lven.xview.adapter;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * 通知合并：连续的操作合并成一个，其他的变成全部刷新
+ */
+public class UpdateBatchTest {
+
+    @Test
+    public void singleOperation_dispatchedAsIs() {
+        UpdateBatch batch = new UpdateBatch();
+        batch.move(3, 0);
+        assertEquals(Collections.singletonList("move 3 0"), dispatch(batch));
+        assertTrue(batch.isEmpty());
+    }
+
+    @Test
+    public void appendsInLoop_mergeIntoOneInsert() {
+        UpdateBatch batch = new UpdateBatch();
+        for (int i = 0; i < 50; i++) {
+            batch.insert(10 + i, 1);
+        }
+        assertEquals(Collections.singletonList("insert 10 50"), dispatch(batch));
+    }
+
+    @Test
+    public void removeSameIndexRepeatedly_mergesIntoOneRemove() {
+        UpdateBatch batch = new UpdateBatch();
+        batch.remove(4, 1);
+        batch.remove(4, 2);
+        batch.remove(3, 1);
+        assertEquals(Collections.singletonList("remove 3 4"), dispatch(batch));
+    }
+
+    @Test
+    public void removeInsertedItems_cancelOut() {
+        UpdateBatch batch = new UpdateBatch();
+        batch.insert(2, 3);
+        batch.remove(3, 1);
+        assertEquals(Collections.singletonList("insert 2 2"), dispatch(batch));
+        batch.insert(2, 1);
+        batch.remove(2, 1);
+        assertTrue(batch.isEmpty());
+    }
+
+    @Test
+    public void overlappingChanges_mergeIntoOneRange() {
+        UpdateBatch batch = new UpdateBatch();
+        batch.change(5, 2);
+        batch.change(3, 2);
+        batch.change(6, 3);
+        assertEquals(Collections.singletonList("change 3 6"), dispatch(batch));
+    }
+
+    @Test
+    public void changeInsertedItem_isPartOfInsert() {
+        UpdateBatch batch = new UpdateBatch();
+        batch.insert(0, 2);
+        batch.change(1, 1);
+        assertEquals(Collections.singletonList("insert 0 2"), dispatch(batch));
+    }
+
+    @Test
+    public void unrelatedOperations_becomeFullChange() {
+        UpdateBatch batch = new UpdateBatch();
+        batch.insert(0, 1);
+        batch.remove(5, 1);
+        batch.change(2, 1);
+        assertEquals(Collections.singletonList("all"), dispatch(batch));
+    }
+
+    @Test
+    public void separateChanges_mergeIntoSpanningRange() {
+        UpdateBatch batch = new UpdateBatch();
+        batch.change(4, 1);
+        batch.change(1, 1);
+        assertEquals(Collections.singletonList("change 1 4"), dispatch(batch));
+    }
+
+    @Test
+    public void mergedInsertAndRemove_matchListContent() {
+        List<String> list = new ArrayList<>(Arrays.asList("a", "b", "c", "d", "e", "f"));
+        UpdateBatch batch = new UpdateBatch();
+        // 从后往前一个一个删
+        for (int i = 4; i >= 2; i--) {
+            list.remove(i);
+            batch.remove(i, 1);
+        }
+        assertEquals(Arrays.asList("a", "b", "f"), list);
+        assertEquals(Collections.singletonList("remove 2 3"), dispatch(batch));
+    }
+
+    private static List<String> dispatch(UpdateBatch batch) {
+        final List<String> ops = new ArrayList<>();
+        batch.dispatch(new UpdateBatch.Callback() {
+            @Override
+            public void onDataSetChanged() {
+                ops.add("all");
+            }
+
+            @Override
+            public void onInserted(int position, int count) {
+                ops.add("insert " + position + " " + count);
+            }
+
+            @Override
+            public void onRemoved(int position, int count) {
+                ops.add("remove " + position + " " + count);
+            }
+
+            @Override
+            public void onMoved(int fromPosition, int toPosition) {
+                ops.add("move " + fromPosition + " " + toPosition);
+            }
+
+            @Override
+            public void onChanged(int position, int count) {
+                ops.add("change " + position + " " + count);
+            }
+        });
+        return ops;
+    }
+}
@@ -0,0 +1,86 @@
+package cn.lven.xview.adapter;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * 条目View的缓存：每个ID只查找一次，重复绑定不再查找
+ */
+public class ViewCacheTest {
+    private static final int VIEW_COUNT = 12;
+
+    /**
+     * 记录查找次数，ID为负数的找不到
+     */
+    private static class CountingFinder implements ViewCache.Finder<Object> {
+        int mFindCount;
+
+        @Override
+        public Object find(int id) {
+            mFindCount++;
+            return id < 0 ? null : "view" + id;
+        }
+    }
+
+    @Test
+    public void bindingTwice_findsEachViewOnce() {
+        CountingFinder finder = new CountingFinder();
+        ViewCache<Object> cache = new ViewCache<>(finder, 8);
+        Object[] first = bind(cache);
+        assertEquals(VIEW_COUNT, finder.mFindCount);
+        // 复用的条目再绑定一次，全部命中缓存
+        Object[] second = bind(cache);
+        assertEquals(VIEW_COUNT, finder.mFindCount);
+        assertEquals(VIEW_COUNT, cache.size());
+        for (int i = 0; i < VIEW_COUNT; i++) {
+            assertSame(first[i], second[i]);
+        }
+    }
+
+    @Test
+    public void prebuilt_neverFinds() {
+        CountingFinder finder = new CountingFinder();
+        ViewCache<Object> cache = new ViewCache<>(finder, 8);
+        // 倒着放，检查按ID排序
+        for (int i = VIEW_COUNT - 1; i >= 0; i--) {
+            cache.putIfAbsent(id(i), "view" + id(i));
+        }
+        bind(cache);
+        bind(cache);
+        assertEquals(0, finder.mFindCount);
+    }
+
+    @Test
+    public void putIfAbsent_keepsFirstView() {
+        ViewCache<Object> cache = new ViewCache<>(new CountingFinder(), 1);
+        cache.putIfAbsent(1, "first");
+        cache.putIfAbsent(1, "second");
+        assertEquals("first", cache.get(1));
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void missingView_isNotCached() {
+        CountingFinder finder = new CountingFinder();
+        ViewCache<Object> cache = new ViewCache<>(finder, 8);
+        assertNull(cache.get(-1));
+        assertNull(cache.get(-1));
+        // 找不到的不缓存，之后加到条目里面还能找到
+        assertEquals(2, finder.mFindCount);
+        assertEquals(0, cache.size());
+    }
+
+    private static Object[] bind(ViewCache<Object> cache) {
+        Object[] views = new Object[VIEW_COUNT];
+        for (int i = 0; i < VIEW_COUNT; i++) {
+            views[i] = cache.get(id(i));
+        }
+        return views;
+    }
+
+    private static int id(int index) {
+        // 和R.id一样不连续
+        return 0x7f080000 + index * 3;
+    }
+}
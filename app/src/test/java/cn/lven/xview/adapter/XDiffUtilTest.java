@@ -0,0 +1,115 @@
+package cn.lven.xview.adapter;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * 差异计算：把结果按顺序应用到旧列表上，应该得到新列表
+ */
+public class XDiffUtilTest {
+
+    private static final XDiffUtil.ItemCallback<String> CALLBACK = new XDiffUtil.ItemCallback<String>() {
+        @Override
+        public boolean areItemsTheSame(String oldItem, String newItem) {
+            return oldItem.charAt(0) == newItem.charAt(0);
+        }
+
+        @Override
+        public boolean areContentsTheSame(String oldItem, String newItem) {
+            return oldItem.equals(newItem);
+        }
+    };
+
+    @Test
+    public void insertAtEnd_onlyOneInsert() {
+        Recorder recorder = apply(Arrays.asList("a", "b", "c"), Arrays.asList("a", "b", "c", "d"));
+        assertEquals(Collections.singletonList("insert 3 1"), recorder.mOps);
+    }
+
+    @Test
+    public void changedContent_onlyOneChange() {
+        Recorder recorder = apply(Arrays.asList("a", "b", "c"), Arrays.asList("a", "b2", "c"));
+        assertEquals(Collections.singletonList("change 1 1"), recorder.mOps);
+    }
+
+    @Test
+    public void movedItem_isMoveNotRemoveInsert() {
+        Recorder recorder = apply(Arrays.asList("a", "b", "c", "d"), Arrays.asList("d", "a", "b", "c"));
+        assertEquals(Collections.singletonList("move 3 0"), recorder.mOps);
+    }
+
+    @Test
+    public void randomLists_reachNewList() {
+        Random random = new Random(7);
+        for (int t = 0; t < 2000; t++) {
+            List<String> oldList = randomList(random);
+            List<String> newList = randomList(random);
+            apply(oldList, newList);
+        }
+    }
+
+    private static List<String> randomList(Random random) {
+        List<String> list = new ArrayList<>();
+        for (char c = 'a'; c <= 'z'; c++) {
+            if (random.nextInt(3) > 0) {
+                list.add(c + (random.nextInt(4) == 0 ? "2" : ""));
+            }
+        }
+        if (random.nextBoolean()) {
+            Collections.shuffle(list, random);
+        }
+        return list;
+    }
+
+    private static Recorder apply(List<String> oldList, List<String> newList) {
+        XDiffUtil.DiffResult result = XDiffUtil.calculateDiff(oldList, newList, CALLBACK);
+        Recorder recorder = new Recorder(oldList, newList);
+        result.dispatchUpdatesTo(recorder);
+        assertEquals(newList, recorder.mWorking);
+        return recorder;
+    }
+
+    private static class Recorder implements XDiffUtil.ListUpdateCallback {
+        private final List<String> mNewList;
+        private final List<String> mWorking;
+        private final List<String> mOps = new ArrayList<>();
+
+        Recorder(List<String> oldList, List<String> newList) {
+            mNewList = newList;
+            mWorking = new ArrayList<>(oldList);
+        }
+
+        @Override
+        public void onInserted(int position, int count) {
+            mOps.add("insert " + position + " " + count);
+            mWorking.addAll(position, mNewList.subList(position, position + count));
+        }
+
+        @Override
+        public void onRemoved(int position, int count) {
+            mOps.add("remove " + position + " " + count);
+            mWorking.subList(position, position + count).clear();
+        }
+
+        @Override
+        public void onMoved(int fromPosition, int toPosition) {
+            mOps.add("move " + fromPosition + " " + toPosition);
+            mWorking.add(toPosition, mWorking.remove(fromPosition));
+        }
+
+        @Override
+        public void onChanged(int position, int count) {
+            mOps.add("change " + position + " " + count);
+            for (int i = position; i < position + count; i++) {
+                mWorking.set(i, mNewList.get(i));
+            }
+        }
+    }
+}
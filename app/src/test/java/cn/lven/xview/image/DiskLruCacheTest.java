@@ -0,0 +1,158 @@
+package cn.lven.xview.image;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.*;
+
+/**
+ * 磁盘缓存：写入、淘汰、重新打开后从索引恢复
+ */
+public class DiskLruCacheTest {
+    private static final Executor DIRECT = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    private File mDirectory;
+
+    @Before
+    public void setUp() throws IOException {
+        mDirectory = File.createTempFile("disk-cache", "");
+        mDirectory.delete();
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = mDirectory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        mDirectory.delete();
+    }
+
+    @Test
+    public void putThenGet() throws IOException {
+        DiskLruCache cache = new DiskLruCache(mDirectory, 1000, 16, DIRECT);
+        assertNull(cache.get("a"));
+        assertTrue(cache.put("a", bytes(10)));
+        File file = cache.get("a");
+        assertNotNull(file);
+        assertEquals(10, file.length());
+        assertEquals(10, cache.size());
+        // 覆盖
+        assertTrue(cache.put("a", bytes(20)));
+        assertEquals(20, cache.size());
+        assertEquals(1, cache.getEntryCount());
+        cache.close();
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsedOverSize() throws IOException {
+        DiskLruCache cache = new DiskLruCache(mDirectory, 25, 16, DIRECT);
+        cache.put("a", bytes(10));
+        cache.put("b", bytes(10));
+        cache.get("a");
+        cache.put("c", bytes(10));
+        assertNotNull(cache.get("a"));
+        assertNull(cache.get("b"));
+        assertNotNull(cache.get("c"));
+        assertEquals(20, cache.size());
+        cache.close();
+    }
+
+    @Test
+    public void evictsWhenIndexIsFull() throws IOException {
+        DiskLruCache cache = new DiskLruCache(mDirectory, 1000, 2, DIRECT);
+        cache.put("a", bytes(1));
+        cache.put("b", bytes(1));
+        cache.put("c", bytes(1));
+        assertEquals(2, cache.getEntryCount());
+        assertNull(cache.get("a"));
+        cache.close();
+    }
+
+    @Test
+    public void reopenRestoresEntriesAndOrder() throws IOException {
+        DiskLruCache cache = new DiskLruCache(mDirectory, 25, 16, DIRECT);
+        cache.put("a", bytes(10));
+        cache.put("b", bytes(10));
+        cache.get("a");
+        cache.close();
+
+        DiskLruCache reopened = new DiskLruCache(mDirectory, 25, 16, DIRECT);
+        assertEquals(2, reopened.getEntryCount());
+        assertEquals(20, reopened.size());
+        // b是最久没用的
+        reopened.put("c", bytes(10));
+        assertNull(reopened.get("b"));
+        assertNotNull(reopened.get("a"));
+        reopened.close();
+    }
+
+    @Test
+    public void changedCapacityResetsIndex() throws IOException {
+        DiskLruCache cache = new DiskLruCache(mDirectory, 100, 16, DIRECT);
+        cache.put("a", bytes(10));
+        cache.close();
+
+        DiskLruCache reopened = new DiskLruCache(mDirectory, 100, 32, DIRECT);
+        assertEquals(0, reopened.getEntryCount());
+        assertNull(reopened.get("a"));
+        reopened.close();
+    }
+
+    @Test
+    public void failedWriteKeepsOldEntry() throws IOException {
+        DiskLruCache cache = new DiskLruCache(mDirectory, 100, 16, DIRECT);
+        cache.put("a", bytes(10));
+        assertFalse(cache.put("a", new DiskLruCache.Writer() {
+            @Override
+            public void write(OutputStream out) throws IOException {
+                out.write(1);
+                throw new IOException("broken");
+            }
+        }));
+        assertEquals(10, cache.get("a").length());
+        cache.close();
+    }
+
+    @Test
+    public void reopenRemovesFilesMissingFromIndex() throws IOException {
+        DiskLruCache cache = new DiskLruCache(mDirectory, 100, 16, DIRECT);
+        cache.put("a", bytes(10));
+        File kept = cache.get("a");
+        cache.close();
+        // 重命名之后没来得及写索引，和没写完的临时文件
+        File orphan = new File(mDirectory, "deadbeef.img");
+        File temp = new File(mDirectory, "deadbeef.1.tmp");
+        assertTrue(orphan.createNewFile());
+        assertTrue(temp.createNewFile());
+
+        DiskLruCache reopened = new DiskLruCache(mDirectory, 100, 16, DIRECT);
+        assertFalse(orphan.exists());
+        assertFalse(temp.exists());
+        assertTrue(kept.exists());
+        assertEquals(kept, reopened.get("a"));
+        reopened.close();
+    }
+
+    private static DiskLruCache.Writer bytes(final int count) {
+        return new DiskLruCache.Writer() {
+            @Override
+            public void write(OutputStream out) throws IOException {
+                out.write(new byte[count]);
+            }
+        };
+    }
+}
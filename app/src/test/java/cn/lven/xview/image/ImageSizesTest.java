@@ -0,0 +1,34 @@
+package cn.lven.xview.image;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * 图片尺寸和缓存Key的计算
+ */
+public class ImageSizesTest {
+
+    @Test
+    public void sampleSizeKeepsAtLeastTargetSize() {
+        assertEquals(1, ImageSizes.calculateInSampleSize(100, 100, 100, 100));
+        assertEquals(1, ImageSizes.calculateInSampleSize(199, 199, 100, 100));
+        assertEquals(2, ImageSizes.calculateInSampleSize(200, 200, 100, 100));
+        assertEquals(4, ImageSizes.calculateInSampleSize(4000, 3000, 720, 720));
+        // 两边都要够大
+        assertEquals(2, ImageSizes.calculateInSampleSize(4000, 300, 100, 100));
+    }
+
+    @Test
+    public void unknownTargetSideIsNotLimited() {
+        assertEquals(4, ImageSizes.calculateInSampleSize(4000, 3000, 1000, 0));
+        assertEquals(1, ImageSizes.calculateInSampleSize(0, 0, 100, 100));
+    }
+
+    @Test
+    public void cacheKeyContainsSizeAndTransform() {
+        assertEquals("/a.jpg@100x50", ImageSizes.cacheKey("/a.jpg", 100, 50, null));
+        assertEquals("/a.jpg@100x50#circle", ImageSizes.cacheKey("/a.jpg", 100, 50, "circle"));
+        assertFalse(ImageSizes.cacheKey("/a.jpg", 100, 50, null).equals(ImageSizes.cacheKey("/a.jpg", 50, 100, null)));
+    }
+}
@@ -0,0 +1,169 @@
+package cn.lven.xview.view.measure;
+
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * 流式布局换行计算
+ */
+public class FlowLinesTest {
+
+    @Test
+    public void wrapsWhenLineIsFull() {
+        FlowLines lines = create(100, 40, 40, 40, 30, 90);
+        assertEquals(3, lines.getLineCount());
+        assertEquals(2, lines.getLineItemCount(0));
+        assertEquals(80, lines.getLineWidth(0));
+        assertEquals(2, lines.getLineStart(1));
+        assertEquals(2, lines.getLineItemCount(1));
+        assertEquals(4, lines.getLineStart(2));
+    }
+
+    @Test
+    public void goneItemsAreSkipped() {
+        FlowLines lines = create(100, 60, -1, 40, 10);
+        assertEquals(2, lines.getLineCount());
+        assertEquals(2, lines.getLineItemCount(0));
+        assertEquals(100, lines.getLineWidth(0));
+        assertEquals(3, lines.getLineEnd(0));
+    }
+
+    @Test
+    public void tooWideItemDoesNotAddEmptyLine() {
+        FlowLines lines = create(100, 150, 20);
+        assertEquals(2, lines.getLineCount());
+        assertEquals(0, lines.getLineStart(0));
+        assertEquals(150, lines.getMaxWidth(1));
+    }
+
+    @Test
+    public void unchangedSizesHitTheCache() {
+        FlowLines lines = create(100, 40, 40, 40, 30, 90);
+        lines.compute();
+        assertEquals(1, lines.getCacheHitCount());
+        assertEquals(1, lines.getRewrapCount());
+    }
+
+    @Test
+    public void rewrapStartsFromDirtyLine() {
+        Random random = new Random(3);
+        FlowLines lines = new FlowLines();
+        lines.setAvailableWidth(300);
+        lines.setItemCount(300);
+        for (int i = 0; i < 300; i++) {
+            lines.setItemSize(i, 20 + random.nextInt(80), 30);
+        }
+        lines.compute();
+        lines.resetStats();
+        lines.setItemSize(290, 55, 30);
+        lines.compute();
+        assertTrue(lines.getRewrapItemCount() < 20);
+        assertLinesEqual(rebuild(lines), lines);
+    }
+
+    @Test
+    public void incrementalMatchesFullCompute() {
+        Random random = new Random(11);
+        FlowLines lines = new FlowLines();
+        lines.setAvailableWidth(250);
+        for (int round = 0; round < 500; round++) {
+            int count = random.nextInt(60);
+            lines.setItemCount(count);
+            for (int i = 0; i < count; i++) {
+                if (random.nextInt(4) == 0) {
+                    lines.setItemSize(i, random.nextInt(8) == 0 ? -1 : random.nextInt(120), 10 + random.nextInt(20));
+                }
+            }
+            lines.compute();
+            assertLinesEqual(rebuild(lines), lines);
+        }
+    }
+
+    @Test
+    public void insertAndRemoveShiftSizes() {
+        FlowLines lines = create(100, 40, 40, 40);
+        lines.insertItems(1, 2);
+        assertFalse(lines.isItemSizeKnown(1));
+        assertFalse(lines.isItemSizeKnown(2));
+        assertEquals(40, lines.getItemWidth(3));
+        lines.setItemSize(1, 10, 10);
+        lines.setItemSize(2, 10, 10);
+        lines.compute();
+        assertEquals(2, lines.getLineCount());
+        lines.removeItems(0, 3);
+        lines.compute();
+        assertEquals(2, lines.getItemCount());
+        assertEquals(1, lines.getLineCount());
+        assertEquals(80, lines.getLineWidth(0));
+        assertEquals(0, lines.findLineAt(5));
+    }
+
+    @Test
+    public void noAllocationAfterWarmUp() {
+        FlowLines lines = new FlowLines();
+        lines.setAvailableWidth(1080);
+        lines.setItemCount(500);
+        for (int i = 0; i < 500; i++) {
+            lines.setItemSize(i, 100 + (i % 7) * 30, 60);
+        }
+        lines.compute();
+        com.sun.management.ThreadMXBean bean =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        // 预热之后再统计
+        runPasses(lines, 1000);
+        long before = bean.getThreadAllocatedBytes(threadId);
+        runPasses(lines, 1000);
+        long allocated = bean.getThreadAllocatedBytes(threadId) - before;
+        assertEquals(0, allocated);
+    }
+
+    private static void runPasses(FlowLines lines, int passes) {
+        for (int pass = 0; pass < passes; pass++) {
+            int index = pass % 500;
+            lines.setItemSize(index, 100 + (pass % 5) * 40, 60);
+            lines.compute();
+            lines.setAvailableWidth(pass % 2 == 0 ? 1000 : 1080);
+            lines.compute();
+            lines.getMaxWidth(lines.getLineCount());
+            lines.getTotalHeight(lines.getLineCount());
+        }
+    }
+
+    private static FlowLines create(int availableWidth, int... widths) {
+        FlowLines lines = new FlowLines();
+        lines.setAvailableWidth(availableWidth);
+        lines.setItemCount(widths.length);
+        for (int i = 0; i < widths.length; i++) {
+            lines.setItemSize(i, widths[i], 10);
+        }
+        lines.compute();
+        return lines;
+    }
+
+    private static FlowLines rebuild(FlowLines source) {
+        FlowLines lines = new FlowLines();
+        lines.setAvailableWidth(source.getAvailableWidth());
+        lines.setItemCount(source.getItemCount());
+        for (int i = 0; i < source.getItemCount(); i++) {
+            lines.setItemSize(i, source.getItemWidth(i), source.getItemHeight(i));
+        }
+        lines.compute();
+        return lines;
+    }
+
+    private static void assertLinesEqual(FlowLines expected, FlowLines actual) {
+        assertEquals(expected.getLineCount(), actual.getLineCount());
+        for (int i = 0; i < expected.getLineCount(); i++) {
+            assertEquals(expected.getLineStart(i), actual.getLineStart(i));
+            assertEquals(expected.getLineEnd(i), actual.getLineEnd(i));
+            assertEquals(expected.getLineItemCount(i), actual.getLineItemCount(i));
+            assertEquals(expected.getLineWidth(i), actual.getLineWidth(i));
+            assertEquals(expected.getLineHeight(i), actual.getLineHeight(i));
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package cn.lven.xview.view.measure;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * 网格布局的尺寸计算
+ */
+public class GridMeasureTest {
+
+    @Test
+    public void cellHeightPrefersFixedHeight() {
+        assertEquals(80, GridMeasure.cellHeight(100, 1.5f, 80));
+        assertEquals(150, GridMeasure.cellHeight(100, 1.5f, 0));
+        assertEquals(-1, GridMeasure.cellHeight(100, 0, 0));
+    }
+
+    @Test
+    public void fixedHeightCountsRowsAndSpaces() {
+        assertEquals(0, GridMeasure.fixedHeight(0, 3, 100, 10));
+        assertEquals(100, GridMeasure.fixedHeight(3, 3, 100, 10));
+        assertEquals(210, GridMeasure.fixedHeight(4, 3, 100, 10));
+        assertEquals(GridMeasure.squareHeight(7, 3, 50, 4), GridMeasure.fixedHeight(7, 3, 50, 4));
+    }
+
+    @Test
+    public void rowsHeightSumsTallestOfEachRow() {
+        int[] rowHeights = {120, 80, 0};
+        assertEquals(0, GridMeasure.rowsHeight(rowHeights, 0, 10));
+        assertEquals(120, GridMeasure.rowsHeight(rowHeights, 1, 10));
+        assertEquals(210, GridMeasure.rowsHeight(rowHeights, 2, 10));
+    }
+
+    @Test
+    public void measureTakesTallestOfEachRow() {
+        final int[] heights = {50, 80, 60, 40, 30};
+        int[] rowHeights = new int[2];
+        GridMeasure.ItemMeasurer measurer = new GridMeasure.ItemMeasurer() {
+            @Override
+            public int measureItem(int position, int itemWidth, int cellHeight) {
+                return cellHeight >= 0 ? cellHeight : heights[position];
+            }
+        };
+        assertEquals(80 + 10 + 40, GridMeasure.measure(5, 3, 100, -1, 10, rowHeights, measurer));
+        assertEquals(80, rowHeights[0]);
+        assertEquals(40, rowHeights[1]);
+        assertEquals(GridMeasure.fixedHeight(5, 3, 70, 10), GridMeasure.measure(5, 3, 100, 70, 10, rowHeights, measurer));
+    }
+
+    @Test
+    public void layoutStacksRows() {
+        final int[] lefts = new int[4];
+        final int[] tops = new int[4];
+        GridMeasure.ItemPlacer placer = new GridMeasure.ItemPlacer() {
+            @Override
+            public void placeItem(int position, int left, int top) {
+                lefts[position] = left;
+                tops[position] = top;
+            }
+        };
+        GridMeasure.layout(4, 2, 100, -1, new int[]{80, 40}, 5, 10, 16, 8, placer);
+        assertArrayEquals(new int[]{16, 121, 16, 121}, lefts);
+        assertArrayEquals(new int[]{8, 8, 98, 98}, tops);
+    }
+}
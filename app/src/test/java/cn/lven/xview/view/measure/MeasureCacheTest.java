@@ -0,0 +1,64 @@
+package cn.lven.xview.view.measure;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * 测量缓存：Key包含测量参数，超过个数淘汰最久没用的
+ */
+public class MeasureCacheTest {
+
+    @Test
+    public void sameKeyAndSpec_hits() {
+        MeasureCache cache = new MeasureCache(8);
+        int[] size = new int[4];
+        assertFalse(cache.get("tag", 100, 0, size));
+        cache.put("tag", 100, 0, 40, 20, 4, 2);
+        assertTrue(cache.get(new String("tag"), 100, 0, size));
+        assertArrayEquals(new int[]{40, 20, 4, 2}, size);
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+    }
+
+    @Test
+    public void differentWidthSpec_misses() {
+        MeasureCache cache = new MeasureCache(8);
+        cache.put("tag", 100, 0, 40, 20, 0, 0);
+        assertFalse(cache.get("tag", 200, 0, new int[4]));
+    }
+
+    @Test
+    public void overMaxSize_evictsLeastRecentlyUsed() {
+        MeasureCache cache = new MeasureCache(2);
+        int[] size = new int[4];
+        cache.put("a", 0, 0, 1, 1, 0, 0);
+        cache.put("b", 0, 0, 2, 2, 0, 0);
+        assertTrue(cache.get("a", 0, 0, size));
+        cache.put("c", 0, 0, 3, 3, 0, 0);
+        assertEquals(2, cache.size());
+        assertTrue(cache.get("a", 0, 0, size));
+        assertFalse(cache.get("b", 0, 0, size));
+
+        cache.setMaxSize(1);
+        assertEquals(1, cache.size());
+        cache.setMaxSize(0);
+        cache.put("d", 0, 0, 4, 4, 0, 0);
+        assertFalse(cache.get("d", 0, 0, size));
+    }
+
+    @Test
+    public void beginPass_resetsPassCounters() {
+        MeasureCache cache = new MeasureCache(8);
+        int[] size = new int[4];
+        cache.put("a", 0, 0, 1, 1, 0, 0);
+        cache.get("a", 0, 0, size);
+        cache.get("b", 0, 0, size);
+        assertEquals(1, cache.getPassHitCount());
+        assertEquals(1, cache.getPassMissCount());
+        cache.beginPass();
+        assertEquals(0, cache.getPassHitCount());
+        assertEquals(0, cache.getPassMissCount());
+        assertEquals(1, cache.getHitCount());
+    }
+}
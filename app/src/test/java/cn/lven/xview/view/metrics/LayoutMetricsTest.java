@@ -0,0 +1,70 @@
+package cn.lven.xview.view.metrics;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * 布局耗时统计
+ */
+public class LayoutMetricsTest {
+
+    @Test
+    public void histogramBucketsByPowerOfTwo() {
+        assertEquals(0, Histogram.bucketOf(0));
+        assertEquals(1, Histogram.bucketOf(1));
+        assertEquals(2, Histogram.bucketOf(2));
+        assertEquals(2, Histogram.bucketOf(3));
+        assertEquals(11, Histogram.bucketOf(1024));
+        assertEquals(Histogram.BUCKET_COUNT - 1, Histogram.bucketOf(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void histogramSummary() {
+        Histogram histogram = new Histogram();
+        assertEquals(0, histogram.getPercentile(50));
+        for (int i = 1; i <= 100; i++) {
+            histogram.record(i * 1000);
+        }
+        assertEquals(100, histogram.getCount());
+        assertEquals(1000, histogram.getMin());
+        assertEquals(100000, histogram.getMax());
+        assertEquals(50500, histogram.getMean());
+        long p50 = histogram.getPercentile(50);
+        // 近似值，和真实值在同一个桶里面
+        assertEquals(Histogram.bucketOf(50000), Histogram.bucketOf(p50));
+        assertEquals(100000, histogram.getPercentile(100));
+        assertEquals(1000, histogram.getPercentile(0));
+
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getMax());
+    }
+
+    @Test
+    public void recordsStagesAndNotifiesListener() {
+        final int[] calls = new int[LayoutMetrics.STAGE_COUNT];
+        LayoutMetrics metrics = new LayoutMetrics("test", new LayoutMetrics.Listener() {
+            @Override
+            public void onPass(LayoutMetrics metrics, int stage, long durationNanos, int count) {
+                calls[stage]++;
+            }
+        });
+        metrics.record(LayoutMetrics.STAGE_MEASURE, 5000, 12);
+        metrics.record(LayoutMetrics.STAGE_MEASURE, 3000, 0);
+        metrics.record(LayoutMetrics.STAGE_GET_VIEW, 800, 1);
+
+        assertEquals(2, calls[LayoutMetrics.STAGE_MEASURE]);
+        assertEquals(1, calls[LayoutMetrics.STAGE_GET_VIEW]);
+        assertEquals(0, calls[LayoutMetrics.STAGE_LAYOUT]);
+        assertEquals(2, metrics.getPassCount(LayoutMetrics.STAGE_MEASURE));
+        assertEquals(8000, metrics.getTiming(LayoutMetrics.STAGE_MEASURE).getTotal());
+        assertEquals(12, metrics.getMeasuredChildren().getMax());
+        assertEquals(6, metrics.getMeasuredChildren().getMean());
+        assertTrue(metrics.toString().startsWith("test measure[n=2"));
+
+        metrics.reset();
+        assertEquals(0, metrics.getPassCount(LayoutMetrics.STAGE_MEASURE));
+        assertEquals(0, metrics.getMeasuredChildren().getCount());
+    }
+}
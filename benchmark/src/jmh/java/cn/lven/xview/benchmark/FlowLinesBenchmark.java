@@ -0,0 +1,117 @@
+package cn.lven.xview.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import cn.lven.xview.view.measure.FlowLines;
+
+/**
+ * XFlowLayout 测量和摆放的换行计算
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class FlowLinesBenchmark {
+
+    @Param({"10", "100", "1000", "10000"})
+    public int itemCount;
+
+    @Param({"720", "1080"})
+    public int availableWidth;
+
+    @Param({"0", "24"})
+    public int margin;
+
+    @Param({"false", "true"})
+    public boolean isSquare;
+
+    private FlowLines mLines;
+    private int[] mWidths;
+    private int[] mLefts;
+    private int[] mTops;
+    private int mPass;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        mWidths = new int[itemCount];
+        for (int i = 0; i < itemCount; i++) {
+            mWidths[i] = 60 + random.nextInt(200) + margin;
+        }
+        mLefts = new int[itemCount];
+        mTops = new int[itemCount];
+        mLines = new FlowLines();
+        mLines.setAvailableWidth(availableWidth);
+        mLines.setItemCount(itemCount);
+        for (int i = 0; i < itemCount; i++) {
+            mLines.setItemSize(i, mWidths[i], 48 + margin);
+        }
+        mLines.compute();
+    }
+
+    /**
+     * 宽度改变，全部重新换行
+     */
+    @Benchmark
+    public int fullWrap() {
+        mPass++;
+        mLines.setAvailableWidth(availableWidth - (mPass & 1));
+        mLines.compute();
+        return mLines.getLineCount();
+    }
+
+    /**
+     * 最后一个条目改变，只重新换最后一行
+     */
+    @Benchmark
+    public int tailWrap() {
+        mPass++;
+        int index = itemCount - 1;
+        mLines.setItemSize(index, mWidths[index] + (mPass & 1), 48 + margin);
+        mLines.compute();
+        return mLines.getLineCount();
+    }
+
+    /**
+     * 没有改变，直接用上次的结果
+     */
+    @Benchmark
+    public int cacheHit() {
+        mLines.compute();
+        return mLines.getTotalHeight(mLines.getLineCount());
+    }
+
+    /**
+     * 和 XFlowLayout.onLayout 一样计算每个条目的位置
+     */
+    @Benchmark
+    public int layout() {
+        int top = 0;
+        int lineCount = mLines.getLineCount();
+        for (int i = 0; i < lineCount; i++) {
+            int lineItemCount = mLines.getLineItemCount(i);
+            int lineMargin = 0;
+            if (isSquare && lineItemCount > 1) {
+                lineMargin = (availableWidth - mLines.getLineWidth(i)) / (lineItemCount - 1);
+            }
+            int left = 0;
+            int end = mLines.getLineEnd(i);
+            for (int j = mLines.getLineStart(i); j < end; j++) {
+                mLefts[j] = left;
+                mTops[j] = top;
+                left += mLines.getItemWidth(j) + lineMargin;
+            }
+            top += mLines.getLineHeight(i);
+        }
+        return top;
+    }
+}
@@ -0,0 +1,103 @@
+package cn.lven.xview.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+import cn.lven.xview.view.measure.GridMeasure;
+
+/**
+ * XGridLayout 测量和摆放的计算，调用和XGridLayout一样的 GridMeasure.measure 和 GridMeasure.layout
+ * 子View的测量换成直接返回准备好的高度，只统计布局本身的计算
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class GridMeasureBenchmark {
+
+    @Param({"10", "100", "1000", "10000"})
+    public int itemCount;
+
+    @Param({"720", "1080"})
+    public int width;
+
+    @Param({"3", "4"})
+    public int span;
+
+    @Param({"0", "12"})
+    public int space;
+
+    @Param({"false", "true"})
+    public boolean isSquare;
+
+    private int[] mHeights;
+    private int[] mRowHeights;
+    private int[] mLefts;
+    private int[] mTops;
+    private int mItemWidth;
+    private int mCellHeight;
+
+    private final GridMeasure.ItemMeasurer mMeasurer = new GridMeasure.ItemMeasurer() {
+        @Override
+        public int measureItem(int position, int itemWidth, int cellHeight) {
+            return cellHeight >= 0 ? cellHeight : mHeights[position];
+        }
+    };
+
+    private final GridMeasure.ItemPlacer mPlacer = new GridMeasure.ItemPlacer() {
+        @Override
+        public void placeItem(int position, int left, int top) {
+            mLefts[position] = left;
+            mTops[position] = top;
+        }
+    };
+
+    @Setup
+    public void setUp() {
+        mHeights = new int[itemCount];
+        for (int i = 0; i < itemCount; i++) {
+            mHeights[i] = 100 + (i * 37) % 80;
+        }
+        mRowHeights = new int[GridMeasure.rowCount(itemCount, span)];
+        mLefts = new int[itemCount];
+        mTops = new int[itemCount];
+        mItemWidth = GridMeasure.itemWidth(width, 32, span, space);
+        // 宽高一样或者固定高宽比时高度固定，否则每行取最高的
+        mCellHeight = GridMeasure.cellHeight(mItemWidth, isSquare ? 1 : 0, 0);
+        // 摆放用的行高
+        GridMeasure.measure(itemCount, span, mItemWidth, mCellHeight, space, mRowHeights, mMeasurer);
+    }
+
+    /**
+     * 高度固定：直接算出来
+     */
+    @Benchmark
+    public int measureFixedCell() {
+        int cellHeight = GridMeasure.cellHeight(mItemWidth, isSquare ? 1 : 0.75f, 0);
+        return GridMeasure.measure(itemCount, span, mItemWidth, cellHeight, space, mRowHeights, mMeasurer);
+    }
+
+    /**
+     * 高度不固定：每一行取最高的
+     */
+    @Benchmark
+    public int measureRowMax() {
+        return GridMeasure.measure(itemCount, span, mItemWidth, -1, space, mRowHeights, mMeasurer);
+    }
+
+    /**
+     * 摆放，用上一次测量的行高
+     */
+    @Benchmark
+    public int layout() {
+        GridMeasure.layout(itemCount, span, mItemWidth, mCellHeight, mRowHeights, space, space, 16, 16, mPlacer);
+        return mTops[itemCount - 1];
+    }
+}
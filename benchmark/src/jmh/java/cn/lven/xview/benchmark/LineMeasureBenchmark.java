@@ -0,0 +1,44 @@
+package cn.lven.xview.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+import cn.lven.xview.view.measure.LineMeasure;
+
+/**
+ * LineLayout 测量的计算
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class LineMeasureBenchmark {
+
+    @Param({"10", "100", "1000", "10000"})
+    public int itemCount;
+
+    @Param({"0.3", "0.5", "1.0"})
+    public float marginRate;
+
+    private int[] mWidths;
+
+    @Setup
+    public void setUp() {
+        mWidths = new int[itemCount];
+        for (int i = 0; i < itemCount; i++) {
+            mWidths[i] = 40 + (i * 13) % 40;
+        }
+    }
+
+    @Benchmark
+    public int measure() {
+        return LineMeasure.width(mWidths, itemCount, marginRate);
+    }
+}